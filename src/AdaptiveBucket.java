@@ -0,0 +1,115 @@
+/*
+ * AdaptiveBucket.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A dictionary meant to be used as a {@link ChainingHashtable} bucket, which is a {@link LinkedList} while it is small
+ * and a {@link RedBlackTree} while it is large.
+ * <p>
+ * Buckets are almost always small, and a linked list is the cheapest thing to search when they are. But if many keys
+ * share a hash, they all land in one bucket and a list makes every operation on it linear. So once a bucket holds more
+ * than {@code TREEIFY} entries it is rebuilt as a tree, and once it drops under {@code UNTREEIFY} it goes back to a
+ * list. The gap between the two keeps a bucket whose size hovers around the threshold from converting back and forth.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class AdaptiveBucket<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    static final int TREEIFY = 8;
+    static final int UNTREEIFY = 6;
+    
+    private Dictionary<K, V> dict;
+    private boolean tree;
+    
+    /**
+     * Makes a new bucket, as an empty list.
+     */
+    public AdaptiveBucket() {
+        dict = new LinkedList<K, V>();
+        tree = false;
+    }
+    
+    public int size() {
+        return dict.size();
+    }
+    
+    public boolean isEmpty() {
+        return dict.isEmpty();
+    }
+    
+    public V get(K key) throws NullPointerException {
+        return dict.get(key);
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return dict.containsKey(key);
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        return dict.containsValue(value);
+    }
+    
+    public Set<K> getAllKeys() {
+        return dict.getAllKeys();
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return dict.iterator();
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        V previousValue = dict.put(key, val);
+        if (!tree && dict.size() > TREEIFY) {
+            convert(new RedBlackTree<K, V>());
+            tree = true;
+        }
+        return previousValue;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        V value = dict.delete(key);
+        if (tree && dict.size() < UNTREEIFY) {
+            convert(new LinkedList<K, V>());
+            tree = false;
+        }
+        return value;
+    }
+    
+    public void clear() {
+        dict = new LinkedList<K, V>();
+        tree = false;
+    }
+    
+    /**
+     * Moves every entry into {@code to}, which then replaces the current dictionary.
+     * 
+     * @param to an empty dictionary
+     */
+    private void convert(Dictionary<K, V> to) {
+        for (Map.Entry<K, V> entry : dict)
+            to.put(entry.getKey(), entry.getValue());
+        dict = to;
+    }
+    
+    public String toString() {
+        return tree ? "Adaptive Bucket (Red-Black Tree)" : "Adaptive Bucket (Linked List)";
+    }
+}
+
+class AdaptiveBucketSupplier implements DictionarySupplier {
+    public AdaptiveBucketSupplier() {}
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new AdaptiveBucket<K, V>();
+    }
+    
+    public String toString() {
+        return "LL/RBT";
+    }
+}
@@ -0,0 +1,730 @@
+/*
+ * AdaptiveRadixTree.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * An adaptive radix tree (Leis, Kemper and Neumann) for {@code String} keys.
+ * <p>
+ * A key is read as a sequence of bytes, two per {@code char}, high byte first, so that byte order is the same as
+ * {@link String#compareTo}'s order. Each inner node branches on one byte of the key, so a lookup costs about one step
+ * per byte of the key, however many keys there are, and never compares a whole key to another one until it reaches a
+ * leaf. Inner nodes come in four sizes, and grow and shrink between them as children come and go:
+ * <ul>
+ * <li>{@code Node4} and {@code Node16} keep up to 4 or 16 key bytes in a sorted array next to the children;</li>
+ * <li>{@code Node48} has a 256-entry index from key byte to one of 48 child slots;</li>
+ * <li>{@code Node256} has an array of 256 children.</li>
+ * </ul>
+ * A chain of nodes with one child each is collapsed into a prefix stored in the node at the bottom of it ("path
+ * compression"), and a subtree with one key is just a leaf; so every inner node branches at least two ways. Since a
+ * key may be a prefix of another, an inner node can also hold the leaf for the key that ends at it.
+ * <p>
+ * Iteration is in key order, and {@link #prefixIterator} walks just the keys that start with a given prefix.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <V> The value type
+ */
+public class AdaptiveRadixTree<V> implements Dictionary<String, V> {
+    private static final byte[] NO_PREFIX = new byte[0]; // Shared by all the nodes without a prefix
+    
+    private Node<V> root;
+    private int size;
+    
+    private V previousValue; // The value the put or delete in progress replaced
+    
+    /**
+     * Makes a new, empty tree.
+     */
+    public AdaptiveRadixTree() {
+        root = null;
+        size = 0;
+    }
+    
+    /**
+     * Returns the number of bytes in {@code key}.
+     */
+    private static int length(String key) {
+        return key.length() << 1;
+    }
+    
+    /**
+     * Returns byte {@code i} of {@code key}, from 0 to 255.
+     */
+    private static int byteAt(String key, int i) {
+        char c = key.charAt(i >> 1);
+        return (i & 1) == 0 ? c >>> 8 : c & 0xFF;
+    }
+    
+    /**
+     * Returns whether {@code leaf} holds {@code key}, whose first {@code depth} bytes are known to match.
+     */
+    private static boolean matches(Leaf<?> leaf, String key, int depth) {
+        int from = depth >> 1;
+        return leaf.key.length() == key.length()
+                && leaf.key.regionMatches(from, key, from, key.length() - from);
+    }
+    
+    /**
+     * Returns the number of bytes of {@code n}'s prefix that match {@code key} from {@code depth} on.
+     */
+    private static int matchPrefix(Inner<?> n, String key, int depth) {
+        int max = Math.min(n.prefix.length, length(key) - depth);
+        int i = 0;
+        while (i < max && (n.prefix[i] & 0xFF) == byteAt(key, depth + i))
+            i++;
+        return i;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public V get(String key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        int len = length(key);
+        int depth = 0;
+        Node<V> n = root;
+        while (n != null) {
+            if (n instanceof Leaf)
+                return matches((Leaf<V>) n, key, depth) ? ((Leaf<V>) n).val : null;
+            
+            Inner<V> inner = (Inner<V>) n;
+            if (matchPrefix(inner, key, depth) != inner.prefix.length)
+                return null;
+            depth += inner.prefix.length;
+            if (depth == len)
+                return inner.leaf == null ? null : inner.leaf.val;
+            n = inner.child(byteAt(key, depth));
+            depth++;
+        }
+        return null;
+    }
+    
+    public boolean containsKey(String key) throws NullPointerException {
+        return get(key) != null;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Map.Entry<String, V> entry : this)
+            if (value.equals(entry.getValue()))
+                return true;
+        return false;
+    }
+    
+    public Set<String> getAllKeys() {
+        Set<String> set = new HashSet<String>();
+        for (Map.Entry<String, V> entry : this)
+            set.add(entry.getKey());
+        return set;
+    }
+    
+    public V put(String key, V val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        previousValue = null;
+        root = put(root, key, val, 0);
+        V value = previousValue;
+        previousValue = null;
+        return value;
+    }
+    
+    /**
+     * Puts the mapping into the subtree {@code n}, whose keys all match {@code key} in the first {@code depth} bytes.
+     * 
+     * @return the replacement for {@code n}
+     */
+    private Node<V> put(Node<V> n, String key, V val, int depth) {
+        if (n == null) {
+            size++;
+            return new Leaf<V>(key, val);
+        }
+        
+        if (n instanceof Leaf) {
+            Leaf<V> leaf = (Leaf<V>) n;
+            if (matches(leaf, key, depth)) {
+                previousValue = leaf.val;
+                leaf.val = val;
+                return leaf;
+            }
+            // Two different keys; branch where they part.
+            int max = Math.min(length(key), length(leaf.key));
+            int i = depth;
+            while (i < max && byteAt(key, i) == byteAt(leaf.key, i))
+                i++;
+            Inner<V> inner = new Node4<V>(prefix(key, depth, i));
+            inner.attach(leaf, i);
+            inner.attach(new Leaf<V>(key, val), i);
+            size++;
+            return inner;
+        }
+        
+        Inner<V> inner = (Inner<V>) n;
+        int p = matchPrefix(inner, key, depth);
+        if (p < inner.prefix.length) {
+            // The key leaves the prefix partway, so the prefix is split around a new node.
+            Inner<V> parent = new Node4<V>(slice(inner.prefix, 0, p));
+            parent.addChild(inner.prefix[p] & 0xFF, inner);
+            inner.prefix = slice(inner.prefix, p + 1, inner.prefix.length);
+            parent.attach(new Leaf<V>(key, val), depth + p);
+            size++;
+            return parent;
+        }
+        
+        depth += inner.prefix.length;
+        if (depth == length(key)) {
+            if (inner.leaf == null) {
+                inner.leaf = new Leaf<V>(key, val);
+                size++;
+            } else {
+                previousValue = inner.leaf.val;
+                inner.leaf.val = val;
+            }
+            return inner;
+        }
+        
+        int b = byteAt(key, depth);
+        Node<V> child = inner.child(b);
+        if (child != null) {
+            Node<V> replacement = put(child, key, val, depth + 1);
+            if (replacement != child)
+                inner.replaceChild(b, replacement);
+            return inner;
+        }
+        if (inner.isFull())
+            inner = inner.grow();
+        inner.addChild(b, new Leaf<V>(key, val));
+        size++;
+        return inner;
+    }
+    
+    /**
+     * Returns bytes {@code from} to {@code to} of {@code key}.
+     */
+    private static byte[] prefix(String key, int from, int to) {
+        if (from == to)
+            return NO_PREFIX;
+        byte[] prefix = new byte[to - from];
+        for (int i = from; i < to; i++)
+            prefix[i - from] = (byte) byteAt(key, i);
+        return prefix;
+    }
+    
+    public V delete(String key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        previousValue = null;
+        root = delete(root, key, 0);
+        V value = previousValue;
+        previousValue = null;
+        return value;
+    }
+    
+    /**
+     * Returns bytes {@code from} to {@code to} of {@code bytes}.
+     */
+    private static byte[] slice(byte[] bytes, int from, int to) {
+        return from == to ? NO_PREFIX : Arrays.copyOfRange(bytes, from, to);
+    }
+    
+    /**
+     * Deletes {@code key} from the subtree {@code n}, whose keys all match it in the first {@code depth} bytes.
+     * 
+     * @return the replacement for {@code n}, which is {@code null} if it's left empty
+     */
+    private Node<V> delete(Node<V> n, String key, int depth) {
+        if (n == null)
+            return null;
+        
+        if (n instanceof Leaf) {
+            Leaf<V> leaf = (Leaf<V>) n;
+            if (!matches(leaf, key, depth))
+                return leaf;
+            previousValue = leaf.val;
+            size--;
+            return null;
+        }
+        
+        Inner<V> inner = (Inner<V>) n;
+        if (matchPrefix(inner, key, depth) != inner.prefix.length)
+            return inner;
+        depth += inner.prefix.length;
+        
+        if (depth == length(key)) {
+            if (inner.leaf == null)
+                return inner;
+            previousValue = inner.leaf.val;
+            inner.leaf = null;
+            size--;
+            return collapse(inner);
+        }
+        
+        int b = byteAt(key, depth);
+        Node<V> child = inner.child(b);
+        if (child == null)
+            return inner;
+        Node<V> replacement = delete(child, key, depth + 1);
+        if (replacement == child)
+            return inner;
+        if (replacement == null) {
+            inner.removeChild(b);
+            return collapse(inner);
+        }
+        inner.replaceChild(b, replacement);
+        return inner;
+    }
+    
+    /**
+     * Returns the smallest node that can stand in for {@code n} after it's lost a key: nothing, or its own leaf, if it
+     * has no children; its only child, with {@code n}'s prefix in front of the child's, if it has one and no leaf; and
+     * otherwise {@code n}, or a smaller kind of node if {@code n} has got emptier than it needs to be.
+     */
+    private static <V> Node<V> collapse(Inner<V> n) {
+        if (n.count == 0)
+            return n.leaf;
+        if (n.count == 1 && n.leaf == null) {
+            int b = n.next(0);
+            Node<V> child = n.child(b);
+            if (child instanceof Inner) {
+                Inner<V> inner = (Inner<V>) child;
+                byte[] prefix = Arrays.copyOf(n.prefix, n.prefix.length + 1 + inner.prefix.length);
+                prefix[n.prefix.length] = (byte) b;
+                System.arraycopy(inner.prefix, 0, prefix, n.prefix.length + 1, inner.prefix.length);
+                inner.prefix = prefix;
+            }
+            return child;
+        }
+        return n.shrink();
+    }
+    
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+    
+    /**
+     * Returns an iterator over the mappings in key order.
+     * 
+     * @return an iterator over the mappings in this tree
+     */
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return new EntryIterator<V>(root);
+    }
+    
+    /**
+     * Returns an iterator, in key order, over the mappings whose keys start with {@code prefix}. It finds the subtree
+     * that holds them in about one step per byte of {@code prefix}, and walks only that.
+     * 
+     * @param prefix the prefix
+     * @return an iterator over the mappings whose keys start with {@code prefix}
+     * @throws NullPointerException if {@code prefix} is null
+     */
+    public Iterator<Map.Entry<String, V>> prefixIterator(String prefix) throws NullPointerException {
+        if (prefix == null)
+            throw new NullPointerException("Prefix is not allowed to be null");
+        
+        int len = length(prefix);
+        int depth = 0;
+        Node<V> n = root;
+        while (n != null && depth < len) {
+            if (n instanceof Leaf) {
+                if (!((Leaf<V>) n).key.startsWith(prefix))
+                    n = null;
+                break;
+            }
+            
+            Inner<V> inner = (Inner<V>) n;
+            int p = matchPrefix(inner, prefix, depth);
+            if (depth + p == len)
+                break; // The prefix ends within or right after this node's prefix, so all its keys start with it.
+            if (p < inner.prefix.length) {
+                n = null;
+                break;
+            }
+            depth += p;
+            n = inner.child(byteAt(prefix, depth));
+            depth++;
+        }
+        return new EntryIterator<V>(n);
+    }
+    
+    public String toString() {
+        return "Adaptive Radix Tree";
+    }
+    
+    /**
+     * Walks a subtree in key order. Each inner node's own leaf comes before its children, since its key is a prefix of
+     * theirs.
+     */
+    private static class EntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+        private final Deque<Inner<V>> nodes = new ArrayDeque<Inner<V>>();
+        private final Deque<Integer> positions = new ArrayDeque<Integer>(); // The next key byte to visit in each node
+        private Leaf<V> next;
+        
+        public EntryIterator(Node<V> root) {
+            visit(root);
+            advance();
+        }
+        
+        private void visit(Node<V> n) {
+            if (n instanceof Leaf) {
+                next = (Leaf<V>) n;
+            } else if (n != null) {
+                Inner<V> inner = (Inner<V>) n;
+                nodes.push(inner);
+                positions.push(0);
+                next = inner.leaf;
+            }
+        }
+        
+        /**
+         * Finds the next leaf, unless there's one waiting already.
+         */
+        private void advance() {
+            while (next == null && !nodes.isEmpty()) {
+                Inner<V> n = nodes.peek();
+                int b = n.next(positions.pop());
+                if (b < 0) {
+                    nodes.pop();
+                } else {
+                    positions.push(b + 1);
+                    visit(n.child(b));
+                }
+            }
+        }
+        
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        public Map.Entry<String, V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Map.Entry<String, V> entry = new AbstractMap.SimpleImmutableEntry<String, V>(next.key, next.val);
+            next = null;
+            advance();
+            return entry;
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    private static abstract class Node<V> {}
+    
+    /**
+     * A key and its value. The whole key is kept, so that a search that reaches a leaf can check the rest of the key.
+     */
+    private static class Leaf<V> extends Node<V> {
+        private final String key;
+        private V val;
+        
+        public Leaf(String key, V val) {
+            this.key = key;
+            this.val = val;
+        }
+    }
+    
+    /**
+     * A node that branches on one byte of the key, after the bytes in its prefix.
+     */
+    private static abstract class Inner<V> extends Node<V> {
+        protected byte[] prefix; // The bytes that every key below this node has, after those on the path to it
+        protected Leaf<V> leaf; // The key that ends right after the prefix, if there is one
+        protected int count; // The number of children
+        
+        protected Inner(byte[] prefix) {
+            this.prefix = prefix;
+        }
+        
+        /**
+         * Returns the child for key byte {@code b}, or {@code null} if there is none.
+         */
+        abstract Node<V> child(int b);
+        
+        /**
+         * Returns the smallest key byte, no less than {@code from}, that has a child, or {@code -1} if there is none.
+         */
+        abstract int next(int from);
+        
+        /**
+         * Adds a child for key byte {@code b}, which mustn't have one; the node mustn't be full.
+         */
+        abstract void addChild(int b, Node<V> child);
+        
+        /**
+         * Replaces the child for key byte {@code b}, which must have one.
+         */
+        abstract void replaceChild(int b, Node<V> child);
+        
+        /**
+         * Removes the child for key byte {@code b}, which must have one.
+         */
+        abstract void removeChild(int b);
+        
+        abstract boolean isFull();
+        
+        /**
+         * Returns a copy of this node of the next size up.
+         */
+        abstract Inner<V> grow();
+        
+        /**
+         * Returns a copy of this node of the next size down, if its children would fit with room to spare, or else the
+         * node itself.
+         */
+        abstract Inner<V> shrink();
+        
+        /**
+         * Adds {@code n}, whose key matches this node's keys in the first {@code depth} bytes, as this node's leaf or
+         * child.
+         */
+        void attach(Node<V> n, int depth) {
+            String key = ((Leaf<V>) n).key;
+            if (length(key) == depth)
+                leaf = (Leaf<V>) n;
+            else
+                addChild(byteAt(key, depth), n);
+        }
+        
+        /**
+         * Moves this node's prefix, leaf and children into {@code n}, and returns it.
+         */
+        Inner<V> copyInto(Inner<V> n) {
+            n.leaf = leaf;
+            for (int b = next(0); b >= 0; b = next(b + 1))
+                n.addChild(b, child(b));
+            return n;
+        }
+    }
+    
+    /**
+     * An inner node whose key bytes are kept sorted in an array, next to an array of the children. Lookups scan the
+     * key bytes, which all sit in a cache line or two.
+     */
+    private static abstract class ArrayNode<V> extends Inner<V> {
+        private final byte[] keys;
+        private final Node<V>[] children;
+        
+        @SuppressWarnings("unchecked")
+        protected ArrayNode(byte[] prefix, int capacity) {
+            super(prefix);
+            keys = new byte[capacity];
+            children = (Node<V>[]) new Node[capacity];
+        }
+        
+        private int indexOf(int b) {
+            for (int i = 0; i < count; i++)
+                if ((keys[i] & 0xFF) == b)
+                    return i;
+            return -1;
+        }
+        
+        Node<V> child(int b) {
+            int i = indexOf(b);
+            return i < 0 ? null : children[i];
+        }
+        
+        int next(int from) {
+            for (int i = 0; i < count; i++)
+                if ((keys[i] & 0xFF) >= from)
+                    return keys[i] & 0xFF;
+            return -1;
+        }
+        
+        void addChild(int b, Node<V> child) {
+            int i = count;
+            while (i > 0 && (keys[i - 1] & 0xFF) > b) {
+                keys[i] = keys[i - 1];
+                children[i] = children[i - 1];
+                i--;
+            }
+            keys[i] = (byte) b;
+            children[i] = child;
+            count++;
+        }
+        
+        void replaceChild(int b, Node<V> child) {
+            children[indexOf(b)] = child;
+        }
+        
+        void removeChild(int b) {
+            int i = indexOf(b);
+            count--;
+            System.arraycopy(keys, i + 1, keys, i, count - i);
+            System.arraycopy(children, i + 1, children, i, count - i);
+            children[count] = null;
+        }
+        
+        boolean isFull() {
+            return count == keys.length;
+        }
+    }
+    
+    private static class Node4<V> extends ArrayNode<V> {
+        public Node4(byte[] prefix) {
+            super(prefix, 4);
+        }
+        
+        Inner<V> grow() {
+            return copyInto(new Node16<V>(prefix));
+        }
+        
+        Inner<V> shrink() {
+            return this;
+        }
+    }
+    
+    private static class Node16<V> extends ArrayNode<V> {
+        public Node16(byte[] prefix) {
+            super(prefix, 16);
+        }
+        
+        Inner<V> grow() {
+            return copyInto(new Node48<V>(prefix));
+        }
+        
+        Inner<V> shrink() {
+            return count <= 3 ? copyInto(new Node4<V>(prefix)) : this;
+        }
+    }
+    
+    /**
+     * An inner node with an index from each key byte to a slot in an array of 48 children.
+     */
+    private static class Node48<V> extends Inner<V> {
+        private final byte[] index = new byte[256]; // One more than the child's slot, or 0 if there is no child
+        private final Node<V>[] children;
+        
+        @SuppressWarnings("unchecked")
+        public Node48(byte[] prefix) {
+            super(prefix);
+            children = (Node<V>[]) new Node[48];
+        }
+        
+        Node<V> child(int b) {
+            int slot = index[b];
+            return slot == 0 ? null : children[slot - 1];
+        }
+        
+        int next(int from) {
+            for (int b = from; b < 256; b++)
+                if (index[b] != 0)
+                    return b;
+            return -1;
+        }
+        
+        void addChild(int b, Node<V> child) {
+            int slot = 0;
+            while (children[slot] != null)
+                slot++;
+            children[slot] = child;
+            index[b] = (byte) (slot + 1);
+            count++;
+        }
+        
+        void replaceChild(int b, Node<V> child) {
+            children[index[b] - 1] = child;
+        }
+        
+        void removeChild(int b) {
+            children[index[b] - 1] = null;
+            index[b] = 0;
+            count--;
+        }
+        
+        boolean isFull() {
+            return count == children.length;
+        }
+        
+        Inner<V> grow() {
+            return copyInto(new Node256<V>(prefix));
+        }
+        
+        Inner<V> shrink() {
+            return count <= 12 ? copyInto(new Node16<V>(prefix)) : this;
+        }
+    }
+    
+    /**
+     * An inner node with a slot for every key byte.
+     */
+    private static class Node256<V> extends Inner<V> {
+        private final Node<V>[] children;
+        
+        @SuppressWarnings("unchecked")
+        public Node256(byte[] prefix) {
+            super(prefix);
+            children = (Node<V>[]) new Node[256];
+        }
+        
+        Node<V> child(int b) {
+            return children[b];
+        }
+        
+        int next(int from) {
+            for (int b = from; b < 256; b++)
+                if (children[b] != null)
+                    return b;
+            return -1;
+        }
+        
+        void addChild(int b, Node<V> child) {
+            children[b] = child;
+            count++;
+        }
+        
+        void replaceChild(int b, Node<V> child) {
+            children[b] = child;
+        }
+        
+        void removeChild(int b) {
+            children[b] = null;
+            count--;
+        }
+        
+        boolean isFull() {
+            return false;
+        }
+        
+        Inner<V> grow() {
+            return this;
+        }
+        
+        Inner<V> shrink() {
+            return count <= 40 ? copyInto(new Node48<V>(prefix)) : this;
+        }
+    }
+}
+
+/**
+ * Makes {@link AdaptiveRadixTree}s, which only take {@code String} keys.
+ */
+class AdaptiveRadixTreeSupplier implements DictionarySupplier {
+    public AdaptiveRadixTreeSupplier() {}
+    
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return (Dictionary<K, V>) (Dictionary<?, ?>) new AdaptiveRadixTree<V>();
+    }
+    
+    public String toString() {
+        return "ART";
+    }
+}
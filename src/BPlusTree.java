@@ -0,0 +1,605 @@
+/*
+ * BPlusTree.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * An in-memory B+ tree.
+ * <p>
+ * Every node holds up to {@code fanout} keys (or children) in arrays, so a lookup is a binary search within each of
+ * about {@code log(n) / log(fanout)} nodes instead of a pointer chase through about {@code 2 log2(n)} separate ones, as
+ * in {@link RedBlackTree}. That's far fewer cache misses per lookup, and a lot less memory per entry, since there's no
+ * node object per key.
+ * <p>
+ * The keys and values all live in the leaves, which are linked into a list in key order, so iteration and range scans
+ * walk the leaves' arrays and follow the links; inner nodes only hold separator keys. An inner node's key {@code i} is
+ * no greater than any key in child {@code i + 1} and greater than every key in child {@code i}. Every node but the root
+ * is kept at least half full: an overfull node is split in two, and an underfull one borrows a key from a sibling or,
+ * if neither sibling has one to spare, is merged into one.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class BPlusTree<K extends Comparable<K>, V> implements OrderedDictionary<K, V> {
+    final static int DEF_FANOUT = 64;
+    private static final int MIN_FANOUT = 4;
+    
+    private final int fanout; // The most keys a leaf, or children an inner node, may hold
+    private final int minimum; // The fewest keys a leaf, or children an inner node, may hold, unless it's the root
+    
+    private Node<K, V> root;
+    private int size;
+    
+    // Results passed back up by the recursive put and delete.
+    private V previousValue; // The value replaced or deleted
+    private K splitKey; // The separator for the node returned by a split
+    
+    /**
+     * Makes an empty B+ tree with nodes of the given fanout.
+     * 
+     * @param fanout the most keys a leaf, or children an inner node, may hold
+     * @throws IllegalArgumentException if {@code fanout} is less than four
+     */
+    public BPlusTree(int fanout) throws IllegalArgumentException {
+        if (fanout < MIN_FANOUT)
+            throw new IllegalArgumentException("Illegal fanout: " + fanout);
+        this.fanout = fanout;
+        this.minimum = fanout / 2;
+        root = new Leaf<K, V>(fanout);
+        size = 0;
+    }
+    
+    public BPlusTree() {
+        this(DEF_FANOUT);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Binary searches the first {@code n} keys of a node, like {@link Arrays#binarySearch}: returns the key's index if
+     * it's there, and {@code -(insertion point) - 1} otherwise.
+     */
+    private static <K extends Comparable<K>> int search(K[] keys, int n, K key) {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+    
+    /**
+     * Returns the index of the child of {@code n} whose subtree would hold {@code key}.
+     */
+    private static <K extends Comparable<K>, V> int childFor(Inner<K, V> n, K key) {
+        int i = search(n.keys, n.n, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+    
+    /**
+     * Returns the leaf that would hold {@code key}.
+     */
+    private Leaf<K, V> leafFor(K key) {
+        Node<K, V> n = root;
+        while (n instanceof Inner) {
+            Inner<K, V> in = (Inner<K, V>) n;
+            n = in.children[childFor(in, key)];
+        }
+        return (Leaf<K, V>) n;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        Leaf<K, V> leaf = leafFor(key);
+        int i = search(leaf.keys, leaf.n, key);
+        return i >= 0 ? leaf.vals[i] : null;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return get(key) != null;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Leaf<K, V> leaf = firstLeaf(); leaf != null; leaf = leaf.next)
+            for (int i = 0; i < leaf.n; i++)
+                if (value.equals(leaf.vals[i]))
+                    return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (Leaf<K, V> leaf = firstLeaf(); leaf != null; leaf = leaf.next)
+            for (int i = 0; i < leaf.n; i++)
+                set.add(leaf.keys[i]);
+        return set;
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        previousValue = null;
+        Node<K, V> split = put(root, key, val);
+        if (split != null) {
+            Inner<K, V> newRoot = new Inner<K, V>(fanout);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = split;
+            newRoot.n = 1;
+            root = newRoot;
+        }
+        splitKey = null;
+        
+        V value = previousValue;
+        previousValue = null;
+        return value;
+    }
+    
+    /**
+     * Puts the mapping into n's subtree. If n overflows, it is split, and the new right half is returned, with the
+     * separator for it in {@code splitKey}.
+     * 
+     * @return the new right sibling of {@code n}, or {@code null} if it wasn't split
+     */
+    private Node<K, V> put(Node<K, V> node, K key, V val) {
+        if (node instanceof Leaf) {
+            Leaf<K, V> n = (Leaf<K, V>) node;
+            int i = search(n.keys, n.n, key);
+            if (i >= 0) {
+                previousValue = n.vals[i];
+                n.vals[i] = val;
+                return null;
+            }
+            i = -i - 1;
+            System.arraycopy(n.keys, i, n.keys, i + 1, n.n - i);
+            System.arraycopy(n.vals, i, n.vals, i + 1, n.n - i);
+            n.keys[i] = key;
+            n.vals[i] = val;
+            n.n++;
+            size++;
+            return n.n > fanout ? splitLeaf(n) : null;
+        }
+        
+        Inner<K, V> n = (Inner<K, V>) node;
+        int c = childFor(n, key);
+        Node<K, V> split = put(n.children[c], key, val);
+        if (split == null)
+            return null;
+        
+        System.arraycopy(n.keys, c, n.keys, c + 1, n.n - c);
+        System.arraycopy(n.children, c + 1, n.children, c + 2, n.n - c);
+        n.keys[c] = splitKey;
+        n.children[c + 1] = split;
+        n.n++;
+        return n.n + 1 > fanout ? splitInner(n) : null;
+    }
+    
+    private Leaf<K, V> splitLeaf(Leaf<K, V> n) {
+        int mid = n.n / 2;
+        Leaf<K, V> right = new Leaf<K, V>(fanout);
+        right.n = n.n - mid;
+        System.arraycopy(n.keys, mid, right.keys, 0, right.n);
+        System.arraycopy(n.vals, mid, right.vals, 0, right.n);
+        Arrays.fill(n.keys, mid, n.n, null);
+        Arrays.fill(n.vals, mid, n.n, null);
+        n.n = mid;
+        
+        right.next = n.next;
+        if (right.next != null)
+            right.next.prev = right;
+        right.prev = n;
+        n.next = right;
+        
+        splitKey = right.keys[0];
+        return right;
+    }
+    
+    private Inner<K, V> splitInner(Inner<K, V> n) {
+        int mid = n.n / 2; // keys[mid] moves up to the parent
+        Inner<K, V> right = new Inner<K, V>(fanout);
+        right.n = n.n - mid - 1;
+        System.arraycopy(n.keys, mid + 1, right.keys, 0, right.n);
+        System.arraycopy(n.children, mid + 1, right.children, 0, right.n + 1);
+        splitKey = n.keys[mid];
+        Arrays.fill(n.keys, mid, n.n, null);
+        Arrays.fill(n.children, mid + 1, n.n + 1, null);
+        n.n = mid;
+        return right;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        previousValue = null;
+        delete(root, key);
+        if (root instanceof Inner && root.n == 0)
+            root = ((Inner<K, V>) root).children[0];
+        
+        V value = previousValue;
+        previousValue = null;
+        return value;
+    }
+    
+    /**
+     * Deletes the key from n's subtree, fixing up any child that is left underfull.
+     * 
+     * @return whether {@code n} is now underfull
+     */
+    private boolean delete(Node<K, V> node, K key) {
+        if (node instanceof Leaf) {
+            Leaf<K, V> n = (Leaf<K, V>) node;
+            int i = search(n.keys, n.n, key);
+            if (i < 0)
+                return false;
+            previousValue = n.vals[i];
+            System.arraycopy(n.keys, i + 1, n.keys, i, n.n - i - 1);
+            System.arraycopy(n.vals, i + 1, n.vals, i, n.n - i - 1);
+            n.n--;
+            n.keys[n.n] = null;
+            n.vals[n.n] = null;
+            size--;
+            return n.n < minimum;
+        }
+        
+        Inner<K, V> n = (Inner<K, V>) node;
+        int c = childFor(n, key);
+        if (!delete(n.children[c], key))
+            return false;
+        fixChild(n, c);
+        return n.n + 1 < minimum;
+    }
+    
+    /**
+     * Brings child {@code c} of {@code n}, which is underfull, back up to the minimum, by borrowing from a sibling that
+     * has a key to spare, or else merging with one. A merge takes a key and a child away from {@code n}.
+     */
+    private void fixChild(Inner<K, V> n, int c) {
+        Node<K, V> left = c > 0 ? n.children[c - 1] : null;
+        Node<K, V> right = c < n.n ? n.children[c + 1] : null;
+        
+        if (left != null && width(left) > minimum) {
+            borrowFromLeft(n, c);
+        } else if (right != null && width(right) > minimum) {
+            borrowFromRight(n, c);
+        } else if (left != null) {
+            merge(n, c - 1);
+        } else {
+            merge(n, c);
+        }
+    }
+    
+    /**
+     * Returns the number of keys in a leaf, or children of an inner node: the quantity that {@code fanout} and
+     * {@code minimum} bound.
+     */
+    private static int width(Node<?, ?> n) {
+        return n instanceof Leaf ? n.n : n.n + 1;
+    }
+    
+    private void borrowFromLeft(Inner<K, V> parent, int c) {
+        if (parent.children[c] instanceof Leaf) {
+            Leaf<K, V> n = (Leaf<K, V>) parent.children[c];
+            Leaf<K, V> left = (Leaf<K, V>) parent.children[c - 1];
+            System.arraycopy(n.keys, 0, n.keys, 1, n.n);
+            System.arraycopy(n.vals, 0, n.vals, 1, n.n);
+            left.n--;
+            n.keys[0] = left.keys[left.n];
+            n.vals[0] = left.vals[left.n];
+            left.keys[left.n] = null;
+            left.vals[left.n] = null;
+            n.n++;
+            parent.keys[c - 1] = n.keys[0];
+        } else {
+            Inner<K, V> n = (Inner<K, V>) parent.children[c];
+            Inner<K, V> left = (Inner<K, V>) parent.children[c - 1];
+            System.arraycopy(n.keys, 0, n.keys, 1, n.n);
+            System.arraycopy(n.children, 0, n.children, 1, n.n + 1);
+            n.keys[0] = parent.keys[c - 1];
+            n.children[0] = left.children[left.n];
+            parent.keys[c - 1] = left.keys[left.n - 1];
+            left.keys[left.n - 1] = null;
+            left.children[left.n] = null;
+            left.n--;
+            n.n++;
+        }
+    }
+    
+    private void borrowFromRight(Inner<K, V> parent, int c) {
+        if (parent.children[c] instanceof Leaf) {
+            Leaf<K, V> n = (Leaf<K, V>) parent.children[c];
+            Leaf<K, V> right = (Leaf<K, V>) parent.children[c + 1];
+            n.keys[n.n] = right.keys[0];
+            n.vals[n.n] = right.vals[0];
+            n.n++;
+            right.n--;
+            System.arraycopy(right.keys, 1, right.keys, 0, right.n);
+            System.arraycopy(right.vals, 1, right.vals, 0, right.n);
+            right.keys[right.n] = null;
+            right.vals[right.n] = null;
+            parent.keys[c] = right.keys[0];
+        } else {
+            Inner<K, V> n = (Inner<K, V>) parent.children[c];
+            Inner<K, V> right = (Inner<K, V>) parent.children[c + 1];
+            n.keys[n.n] = parent.keys[c];
+            n.children[n.n + 1] = right.children[0];
+            n.n++;
+            parent.keys[c] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.n - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.n);
+            right.keys[right.n - 1] = null;
+            right.children[right.n] = null;
+            right.n--;
+        }
+    }
+    
+    /**
+     * Merges child {@code c + 1} of {@code parent} into child {@code c}, and takes it and its separator out of the
+     * parent.
+     */
+    private void merge(Inner<K, V> parent, int c) {
+        if (parent.children[c] instanceof Leaf) {
+            Leaf<K, V> n = (Leaf<K, V>) parent.children[c];
+            Leaf<K, V> right = (Leaf<K, V>) parent.children[c + 1];
+            System.arraycopy(right.keys, 0, n.keys, n.n, right.n);
+            System.arraycopy(right.vals, 0, n.vals, n.n, right.n);
+            n.n += right.n;
+            n.next = right.next;
+            if (n.next != null)
+                n.next.prev = n;
+        } else {
+            Inner<K, V> n = (Inner<K, V>) parent.children[c];
+            Inner<K, V> right = (Inner<K, V>) parent.children[c + 1];
+            n.keys[n.n] = parent.keys[c];
+            System.arraycopy(right.keys, 0, n.keys, n.n + 1, right.n);
+            System.arraycopy(right.children, 0, n.children, n.n + 1, right.n + 1);
+            n.n += right.n + 1;
+        }
+        
+        System.arraycopy(parent.keys, c + 1, parent.keys, c, parent.n - c - 1);
+        System.arraycopy(parent.children, c + 2, parent.children, c + 1, parent.n - c - 1);
+        parent.n--;
+        parent.keys[parent.n] = null;
+        parent.children[parent.n + 1] = null;
+    }
+    
+    public void clear() {
+        root = new Leaf<K, V>(fanout);
+        size = 0;
+    }
+    
+    private Leaf<K, V> firstLeaf() {
+        Node<K, V> n = root;
+        while (n instanceof Inner)
+            n = ((Inner<K, V>) n).children[0];
+        return (Leaf<K, V>) n;
+    }
+    
+    private Leaf<K, V> lastLeaf() {
+        Node<K, V> n = root;
+        while (n instanceof Inner)
+            n = ((Inner<K, V>) n).children[n.n];
+        return (Leaf<K, V>) n;
+    }
+    
+    public K min() {
+        Leaf<K, V> leaf = firstLeaf();
+        return leaf.n == 0 ? null : leaf.keys[0];
+    }
+    
+    public K max() {
+        Leaf<K, V> leaf = lastLeaf();
+        return leaf.n == 0 ? null : leaf.keys[leaf.n - 1];
+    }
+    
+    public K floor(K key) throws NullPointerException {
+        return nearest(key, true, true);
+    }
+    
+    public K ceiling(K key) throws NullPointerException {
+        return nearest(key, false, true);
+    }
+    
+    public K lower(K key) throws NullPointerException {
+        return nearest(key, true, false);
+    }
+    
+    public K higher(K key) throws NullPointerException {
+        return nearest(key, false, false);
+    }
+    
+    /**
+     * Returns the closest key to {@code key} on one side of it. It's in the leaf that would hold {@code key}, or else
+     * at the near end of the neighboring leaf, since the leaves are never empty unless the whole tree is.
+     * 
+     * @param key the key to search from
+     * @param below whether to look for keys less than {@code key}, rather than greater
+     * @param inclusive whether {@code key} itself counts
+     * @return the closest key, or {@code null} if there is none
+     */
+    private K nearest(K key, boolean below, boolean inclusive) {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        Leaf<K, V> leaf = leafFor(key);
+        int i = search(leaf.keys, leaf.n, key);
+        if (i >= 0 && inclusive)
+            return key;
+        // The index of the answer in this leaf; it may be -1 or leaf.n, meaning it's in a neighbor.
+        if (below)
+            i = i >= 0 ? i - 1 : -i - 2;
+        else
+            i = i >= 0 ? i + 1 : -i - 1;
+        
+        if (i < 0) {
+            leaf = leaf.prev;
+            return leaf == null ? null : leaf.keys[leaf.n - 1];
+        } else if (i >= leaf.n) {
+            leaf = leaf.next;
+            return leaf == null ? null : leaf.keys[0];
+        }
+        return leaf.keys[i];
+    }
+    
+    /**
+     * Returns an iterator over the mappings in key order.
+     * 
+     * @return an iterator over the mappings in this tree
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(null, null);
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator(K fromKey, final K toKey) {
+        Leaf<K, V> start;
+        int index;
+        if (fromKey == null) {
+            start = firstLeaf();
+            index = 0;
+        } else {
+            start = leafFor(fromKey);
+            index = search(start.keys, start.n, fromKey);
+            if (index < 0)
+                index = -index - 1;
+        }
+        final Leaf<K, V> first = start;
+        final int firstIndex = index;
+        
+        return new Iterator<Map.Entry<K, V>>() {
+            private Leaf<K, V> leaf = first;
+            private int i = firstIndex;
+            
+            public boolean hasNext() {
+                while (leaf != null && i >= leaf.n) {
+                    leaf = leaf.next;
+                    i = 0;
+                }
+                return leaf != null && (toKey == null || leaf.keys[i].compareTo(toKey) < 0);
+            }
+            
+            public Map.Entry<K, V> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(leaf.keys[i], leaf.vals[i]);
+                i++;
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    public OrderedDictionary<K, V> headMap(K toKey) throws NullPointerException {
+        if (toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, null, toKey);
+    }
+    
+    public OrderedDictionary<K, V> tailMap(K fromKey) throws NullPointerException {
+        if (fromKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, null);
+    }
+    
+    public OrderedDictionary<K, V> subMap(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, toKey);
+    }
+    
+    public String toString() {
+        return fanout == DEF_FANOUT ? "B+ Tree" : String.format("B+ Tree (%d)", fanout);
+    }
+    
+    private static abstract class Node<K, V> {
+        K[] keys;
+        int n; // The number of keys
+        
+        @SuppressWarnings("unchecked")
+        Node(int capacity) {
+            keys = (K[]) new Comparable[capacity];
+        }
+    }
+    
+    /**
+     * A leaf, holding up to {@code fanout} mappings, plus one more for the moment before it's split.
+     */
+    private static class Leaf<K, V> extends Node<K, V> {
+        V[] vals;
+        Leaf<K, V> prev;
+        Leaf<K, V> next;
+        
+        @SuppressWarnings("unchecked")
+        Leaf(int fanout) {
+            super(fanout + 1);
+            vals = (V[]) new Object[fanout + 1];
+        }
+    }
+    
+    /**
+     * An inner node, with {@code n} keys and {@code n + 1} children; up to {@code fanout} children, plus one more for
+     * the moment before it's split.
+     */
+    private static class Inner<K, V> extends Node<K, V> {
+        Node<K, V>[] children;
+        
+        @SuppressWarnings("unchecked")
+        Inner(int fanout) {
+            super(fanout);
+            children = (Node<K, V>[]) new Node<?, ?>[fanout + 1];
+        }
+    }
+}
+
+class BPlusTreeSupplier implements DictionarySupplier {
+    private int fanout;
+    
+    /**
+     * Constructs empty {@code BPlusTree}s with the given fanout.
+     * 
+     * @param fanout the most keys a leaf, or children an inner node, may hold
+     * 
+     * @see BPlusTree
+     */
+    public BPlusTreeSupplier(int fanout) {
+        this.fanout = fanout;
+    }
+    
+    public BPlusTreeSupplier() {
+        this(BPlusTree.DEF_FANOUT);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new BPlusTree<K, V>(fanout);
+    }
+    
+    public String toString() {
+        return fanout == BPlusTree.DEF_FANOUT ? "BPT" : String.format("BPT(%d)", fanout);
+    }
+}
@@ -9,15 +9,16 @@ import java.util.*;
  * @param <V> The value type
  */
 public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
-    final static int DEF_SIZE = 11;
+    final static int DEF_SIZE = 16; // Capacities are always powers of two.
     final static double DEF_MAX = 7.0;
     final static double DEF_MIN = 5.0;
     final static double DEF_SET = 3.0;
     final static DictionarySupplier DEF_SUPPLIER = new LinkedListSupplier();
     
-    private Dictionary<K, V>[] array;
+    private Dictionary<K, V>[] array; // Empty buckets are null; a bucket is made by the first put into it.
     private int size;
     private int capacity;
+    private int minCapacity; // The table won't shrink below this; raised by clear(true) until the table refills.
     
     private final double maxFullness;
     private final double minFullness;
@@ -25,6 +26,15 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
     
     private final DictionarySupplier supplier;
     
+    // In incremental mode, a resize keeps the old array around and every put or delete moves the next MIGRATION_STEP
+    // old buckets over; reads don't, so that they never move entries under an iterator. Old buckets below the migrated
+    // index are null; the rest hold exactly the keys that hash to them.
+    private static final int MIGRATION_STEP = 2;
+    
+    private final boolean incremental;
+    private Dictionary<K, V>[] oldArray;
+    private int migrated;
+    
     /**
      * Primary constructor.
      * 
@@ -32,11 +42,16 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
      * @param maximum
      * @param minimum
      * @param setFactor
+     * @param incremental whether resizes should be spread out over later operations instead of rehashing everything
+     *            inside one {@code put} or {@code delete}
      */
-    public ChainingHashtable(DictionarySupplier delegateSupplier, double maximum, double minimum, double setFactor) {
+    public ChainingHashtable(DictionarySupplier delegateSupplier, double maximum, double minimum, double setFactor,
+            boolean incremental) {
+        this.incremental = incremental;
         supplier = delegateSupplier;
         size = 0;
         capacity = DEF_SIZE;
+        minCapacity = DEF_SIZE;
         maxFullness = maximum;
         minFullness = minimum;
         setFullness = setFactor;
@@ -44,9 +59,18 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
         @SuppressWarnings("unchecked")
         Dictionary<K, V>[] a = (Dictionary<K, V>[]) new Dictionary[capacity];
         array = a;
-        
-        for (int i = 0; i < capacity; i++)
-            array[i] = newDictionary();
+    }
+    
+    /**
+     * Constructor.
+     * 
+     * @param delegateSupplier
+     * @param maximum
+     * @param minimum
+     * @param setFactor
+     */
+    public ChainingHashtable(DictionarySupplier delegateSupplier, double maximum, double minimum, double setFactor) {
+        this(delegateSupplier, maximum, minimum, setFactor, false);
     }
     
     /**
@@ -85,42 +109,113 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
     }
     
     private int hash(K key) {
-        return Math.abs(key.hashCode());
+        return Hashing.spread(key.hashCode());
     }
     
-    private Dictionary<K, V> getMap(K key) throws NullPointerException {
-        if (key == null)
-            throw new NullPointerException("Key is not allowed to be null");
-        int index = hash(key) % capacity;
-        return array[index];
+    /**
+     * Returns the bucket index for a hash. The index is taken from the high bits of the hash rather than the low bits,
+     * so that a hashtable used as a bucket, which indexes by the low bits, still spreads its keys out.
+     * 
+     * @param h the spread hash
+     * @param cap the (power-of-two) capacity
+     * @return the bucket index
+     */
+    private static int indexFor(int h, int cap) {
+        return h >>> (Integer.numberOfLeadingZeros(cap) + 1);
+    }
+    
+    /**
+     * Returns the array whose bucket holds the keys with hash {@code h}: the old array, during an incremental resize,
+     * if that bucket hasn't been moved yet, and otherwise the current array.
+     * 
+     * @param h the spread hash
+     * @return the array to index with {@code indexFor(h, length)}
+     */
+    private Dictionary<K, V>[] arrayFor(int h) {
+        if (oldArray != null && indexFor(h, oldArray.length) >= migrated)
+            return oldArray;
+        return array;
+    }
+    
+    private Dictionary<K, V> getMap(K key) {
+        int h = hash(key);
+        Dictionary<K, V>[] a = arrayFor(h);
+        return a[indexFor(h, a.length)];
     }
     
     public V get(K key) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
-        return getMap(key).get(key);
+        Dictionary<K, V> st = getMap(key);
+        return st == null ? null : st.get(key);
     }
     
     public Set<K> getAllKeys() {
         Set<K> keySet = new HashSet<K>(size);
-        for (Dictionary<K, V> st : array)
-            if (st != null)
-                keySet.addAll(st.getAllKeys());
+        for (Map.Entry<K, V> entry : this)
+            keySet.add(entry.getKey());
         return keySet;
     }
     
+    /**
+     * Returns an iterator over the mappings, bucket by bucket. During an incremental resize, the buckets still in the
+     * old array come after the new ones.
+     * 
+     * @return an iterator over the mappings in this table
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        final Dictionary<K, V>[] a = array;
+        final Dictionary<K, V>[] old = oldArray;
+        
+        return new Iterator<Map.Entry<K, V>>() {
+            private int next = 0; // The next bucket to go on to, counting the old array after the new one.
+            private Iterator<Map.Entry<K, V>> bucket = Collections.<Map.Entry<K, V>> emptyIterator();
+            
+            public boolean hasNext() {
+                while (!bucket.hasNext()) {
+                    Dictionary<K, V> st;
+                    if (next < a.length)
+                        st = a[next];
+                    else if (old != null && next < a.length + old.length)
+                        st = old[next - a.length];
+                    else
+                        return false;
+                    next++;
+                    if (st != null)
+                        bucket = st.iterator();
+                }
+                return true;
+            }
+            
+            public Map.Entry<K, V> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return bucket.next();
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
     public boolean containsKey(K key) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
-        return getMap(key).containsKey(key);
+        Dictionary<K, V> st = getMap(key);
+        return st != null && st.containsKey(key);
     }
     
     public boolean containsValue(V value) throws NullPointerException {
         if (value == null)
             throw new NullPointerException("Value is not allowed to be null");
         for (Dictionary<K, V> st : array)
-            if (st.containsValue(value))
+            if (st != null && st.containsValue(value))
                 return true;
+        if (oldArray != null)
+            for (Dictionary<K, V> st : oldArray)
+                if (st != null && st.containsValue(value))
+                    return true;
         return false;
     }
     
@@ -130,7 +225,14 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
         if (val == null)
             throw new NullPointerException("Value is not allowed to be null");
         
-        V value = getMap(key).put(key, val);
+        migrate();
+        int h = hash(key);
+        Dictionary<K, V>[] a = arrayFor(h);
+        int index = indexFor(h, a.length);
+        if (a[index] == null)
+            a[index] = newDictionary();
+        
+        V value = a[index].put(key, val);
         if (value == null) {
             size++;
             resize();
@@ -142,8 +244,17 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
-        V value = getMap(key).delete(key);
+        migrate();
+        int h = hash(key);
+        Dictionary<K, V>[] a = arrayFor(h);
+        int index = indexFor(h, a.length);
+        if (a[index] == null)
+            return null;
+        
+        V value = a[index].delete(key);
         if (value != null) {
+            if (a[index].isEmpty())
+                a[index] = null;
             size--;
             resize();
         }
@@ -151,44 +262,129 @@ public class ChainingHashtable<K extends Comparable<K>, V> implements Dictionary
     }
     
     public void clear() {
-        for (K key : getAllKeys())
-            delete(key);
+        clear(false);
+    }
+    
+    /**
+     * Removes every mapping. The buckets are dropped in one pass over the array rather than one key at a time.
+     * <p>
+     * If {@code keepCapacity} is true, the array is kept at its current capacity and reused, and the table won't shrink
+     * until it has been filled back up to its minimum fullness; so refilling it to about the same size doesn't resize
+     * at all. Otherwise the table goes back to its initial capacity.
+     * 
+     * @param keepCapacity whether to keep the current capacity
+     */
+    @SuppressWarnings("unchecked")
+    public void clear(boolean keepCapacity) {
+        if (keepCapacity) {
+            Arrays.fill(array, null);
+            minCapacity = capacity;
+        } else {
+            array = (Dictionary<K, V>[]) new Dictionary[DEF_SIZE];
+            capacity = DEF_SIZE;
+            minCapacity = DEF_SIZE;
+        }
+        oldArray = null;
+        size = 0;
     }
     
     private Dictionary<K, V> newDictionary() {
         return supplier.<K, V> getNew();
     }
     
+    /**
+     * Resizes the array if the size is out of bounds. In incremental mode this only starts the resize, and a resize
+     * that is already in progress is allowed to finish before another one starts.
+     */
     private void resize() {
-        if (!(size < capacity * minFullness && capacity > 11) && !(size > capacity * maxFullness))
+        if (oldArray != null)
+            return;
+        if (minCapacity > DEF_SIZE && size >= capacity * minFullness)
+            minCapacity = DEF_SIZE;
+        if (!(size < capacity * minFullness && capacity > minCapacity) && !(size > capacity * maxFullness))
             return;
         
-        int newcap = (int) (size / setFullness);
+        int newcap = Hashing.capacityFor(size, setFullness, maxFullness, minCapacity);
+        if (newcap == capacity)
+            return;
         
         @SuppressWarnings("unchecked")
         Dictionary<K, V>[] a = (Dictionary<K, V>[]) new Dictionary[newcap];
         
-        for (int i = 0; i < newcap; i++)
-            a[i] = newDictionary();
+        this.oldArray = this.array;
+        this.migrated = 0;
+        this.array = a;
+        this.capacity = newcap;
         
-        for (K key : this.getAllKeys()) {
-            V val = this.get(key);
-            int index = hash(key) % newcap;
-            a[index].put(key, val);
+        if (!incremental)
+            migrate(oldArray.length);
+    }
+    
+    private void migrate() {
+        if (oldArray != null)
+            migrate(MIGRATION_STEP);
+    }
+    
+    /**
+     * Moves up to {@code buckets} more of the old buckets over to the new array, and drops the old array once they
+     * have all been moved.
+     * <p>
+     * Since the bucket index is the top bits of the hash, and capacities are powers of two, the keys of old bucket
+     * {@code j} go to a run of new buckets when the table grows (buckets {@code 2j} and {@code 2j + 1} when it
+     * doubles), and a run of old buckets all go to one new bucket when it shrinks. So growing rehashes the old bucket
+     * into that run of new buckets, and shrinking keeps the first nonempty old bucket of each run as the new bucket and
+     * adds the rest of the run to it.
+     * 
+     * @param buckets how many old buckets to move
+     */
+    private void migrate(int buckets) {
+        int end = Math.min(oldArray.length, migrated + buckets);
+        for (; migrated < end; migrated++) {
+            Dictionary<K, V> st = oldArray[migrated];
+            oldArray[migrated] = null;
+            if (st == null)
+                continue;
+            
+            if (capacity < oldArray.length) {
+                int index = migrated >>> (Integer.numberOfTrailingZeros(oldArray.length) - Integer
+                        .numberOfTrailingZeros(capacity));
+                if (array[index] == null) {
+                    array[index] = st;
+                } else {
+                    for (Map.Entry<K, V> entry : st)
+                        array[index].put(entry.getKey(), entry.getValue());
+                }
+            } else {
+                for (Map.Entry<K, V> entry : st) {
+                    int index = indexFor(hash(entry.getKey()), capacity);
+                    if (array[index] == null)
+                        array[index] = newDictionary();
+                    array[index].put(entry.getKey(), entry.getValue());
+                }
+            }
         }
         
-        this.array = a;
-        this.capacity = newcap;
+        if (migrated == oldArray.length)
+            oldArray = null;
+    }
+    
+    /**
+     * Returns the current ratio of entries to buckets.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
     }
     
     public String toString() {
+        String name = incremental ? "Incremental Chaining Hashtable" : "Chaining Hashtable";
         if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
-            return String.format("Chaining Hashtable (%s)", supplier);
+            return String.format("%s (%s)", name, supplier);
         else if (setFullness == DEF_SET)
-            return String.format("Chaining Hashtable (%s, %.0f, %.0f)", supplier, maxFullness, minFullness);
+            return String.format("%s (%s, %.0f, %.0f)", name, supplier, maxFullness, minFullness);
         else
-            return String.format("Chaining Hashtable (%s, %.0f, %.0f, %.0f)", supplier, maxFullness, minFullness,
-                    setFullness);
+            return String.format("%s (%s, %.0f, %.0f, %.0f)", name, supplier, maxFullness, minFullness, setFullness);
     }
 }
 
@@ -197,6 +393,7 @@ class ChainingHashtableSupplier implements DictionarySupplier {
     private final double min;
     private final double set;
     private final DictionarySupplier supplier;
+    private final boolean incremental;
     
     /**
      * Constructs empty {@code ChainingHashtable}'s with the specified {@code maximum}, {@code minimum}, and {@code set}
@@ -206,15 +403,22 @@ class ChainingHashtableSupplier implements DictionarySupplier {
      * @param maximum the maximum fullness
      * @param minimum the minimum fullness
      * @param setFactor
+     * @param incrementalResize whether resizes are spread out over later operations
      * 
      * @see ChainingHashtable
      */
     public ChainingHashtableSupplier(DictionarySupplier delegateSupplier, double maximum, double minimum,
-            double setFactor) {
+            double setFactor, boolean incrementalResize) {
         supplier = delegateSupplier;
         max = maximum;
         min = minimum;
         set = setFactor;
+        incremental = incrementalResize;
+    }
+    
+    public ChainingHashtableSupplier(DictionarySupplier delegateSupplier, double maximum, double minimum,
+            double setFactor) {
+        this(delegateSupplier, maximum, minimum, setFactor, false);
     }
     
     public ChainingHashtableSupplier(DictionarySupplier delegateSupplier, double maximum, double minimum) {
@@ -234,10 +438,10 @@ class ChainingHashtableSupplier implements DictionarySupplier {
     }
     
     public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
-        return new ChainingHashtable<K, V>(supplier, max, min, set);
+        return new ChainingHashtable<K, V>(supplier, max, min, set, incremental);
     }
     
     public String toString() {
-        return String.format("HT:%s", supplier.toString());
+        return String.format(incremental ? "iHT:%s" : "HT:%s", supplier.toString());
     }
 }
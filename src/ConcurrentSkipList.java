@@ -0,0 +1,484 @@
+/*
+ * ConcurrentSkipList.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A skip list that any number of threads can read and write at once. It's the "lazy" skip list of Herlihy, Lev,
+ * Luchangco and Shavit.
+ * <p>
+ * Reads take no locks at all: {@code get}, {@code containsKey}, the navigation methods and the iterators just follow
+ * the links. A write locks only the nodes it links to or unlinks from, and only for as long as it takes to change the
+ * links, so writes to different parts of the list go ahead in parallel.
+ * <p>
+ * A key is in the list once its node is fully linked, and until the node is marked as deleted; the links are only
+ * changed under the locks, and only after checking that the neighbors found without locks are still neighbors and
+ * still in the list. A node that's marked, or not yet fully linked, is skipped by the readers. A node's value is
+ * replaced in place, under the node's lock.
+ * <p>
+ * The iterators are weakly consistent, like {@link java.util.concurrent.ConcurrentSkipListMap}'s: they never throw
+ * {@link ConcurrentModificationException}, they return each key at most once and in order, and they see every mapping
+ * that was in the list for the whole time they were in use. They may or may not see changes made while they were.
+ * {@code size} is kept in a counter, so it's exact only when no writes are in progress.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class ConcurrentSkipList<K extends Comparable<K>, V> implements OrderedDictionary<K, V> {
+    private static final int MAX_LEVEL = 32;
+    
+    private final Node<K, V> head; // Comes before every key; its key is null
+    private final AtomicInteger size;
+    private final AtomicInteger levels; // The number of levels that have ever had a node in them
+    
+    /**
+     * Makes a new, empty skip list.
+     */
+    public ConcurrentSkipList() {
+        head = new Node<K, V>(null, null, MAX_LEVEL);
+        head.fullyLinked = true;
+        size = new AtomicInteger();
+        levels = new AtomicInteger(1);
+    }
+    
+    /**
+     * Returns the number of levels a new node is linked into. Each level holds about half the keys of the level below
+     * it.
+     */
+    private static int randomLevel() {
+        int bits = ThreadLocalRandom.current().nextInt();
+        int level = 1;
+        while ((bits & 1) == 0 && level < MAX_LEVEL) {
+            bits >>>= 1;
+            level++;
+        }
+        return level;
+    }
+    
+    /**
+     * Finds the nodes around {@code key} on every level: {@code preds[i]} is the last node on level {@code i} with a
+     * key less than {@code key}, and {@code succs[i]} is the node after it. Takes no locks, so the answer may already
+     * be out of date.
+     * 
+     * @return the highest level {@code key}'s node was found on, or {@code -1} if it wasn't found
+     */
+    private int find(K key, Node<K, V>[] preds, Node<K, V>[] succs) {
+        int found = -1;
+        Node<K, V> pred = head;
+        for (int level = levels.get() - 1; level >= 0; level--) {
+            Node<K, V> curr = pred.next(level);
+            int cmp;
+            while (curr != null && (cmp = key.compareTo(curr.key)) >= 0) {
+                if (cmp == 0) {
+                    if (found == -1)
+                        found = level;
+                    break;
+                }
+                pred = curr;
+                curr = pred.next(level);
+            }
+            preds[level] = pred;
+            succs[level] = curr;
+        }
+        return found;
+    }
+    
+    /**
+     * Returns the node with {@code key}, if it's in the list, or else {@code null}.
+     */
+    private Node<K, V> findNode(K key) {
+        Node<K, V> pred = head;
+        for (int level = levels.get() - 1; level >= 0; level--) {
+            Node<K, V> curr = pred.next(level);
+            int cmp;
+            while (curr != null && (cmp = key.compareTo(curr.key)) >= 0) {
+                if (cmp == 0)
+                    return curr.fullyLinked && !curr.marked ? curr : null;
+                pred = curr;
+                curr = pred.next(level);
+            }
+        }
+        return null;
+    }
+    
+    public int size() {
+        return size.get();
+    }
+    
+    public boolean isEmpty() {
+        return first(head) == null;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        Node<K, V> n = findNode(key);
+        return n == null ? null : n.val;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return findNode(key) != null;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Map.Entry<K, V> entry : this)
+            if (value.equals(entry.getValue()))
+                return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>();
+        for (Map.Entry<K, V> entry : this)
+            set.add(entry.getKey());
+        return set;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V put(K key, V val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int topLevel = randomLevel();
+        int top = levels.get();
+        while (top < topLevel && !levels.compareAndSet(top, topLevel))
+            top = levels.get(); // Raised before the node is linked, so searches never start below a node's top level
+        Node<K, V>[] preds = new Node[MAX_LEVEL];
+        Node<K, V>[] succs = new Node[MAX_LEVEL];
+        while (true) {
+            int found = find(key, preds, succs);
+            if (found != -1) {
+                Node<K, V> n = succs[found];
+                if (!n.marked) {
+                    while (!n.fullyLinked)
+                        Thread.yield(); // The put that's linking it in holds no lock that we could wait on.
+                    n.lock.lock();
+                    try {
+                        if (!n.marked) {
+                            V value = n.val;
+                            n.val = val;
+                            return value;
+                        }
+                    } finally {
+                        n.lock.unlock();
+                    }
+                }
+                Thread.yield(); // It's being deleted; try again once it's gone.
+                continue;
+            }
+            
+            int locked = -1;
+            try {
+                boolean valid = true;
+                Node<K, V> prev = null;
+                for (int level = 0; valid && level < topLevel; level++) {
+                    Node<K, V> pred = preds[level];
+                    Node<K, V> succ = succs[level];
+                    if (pred != prev) {
+                        pred.lock.lock();
+                        prev = pred;
+                    }
+                    locked = level;
+                    valid = !pred.marked && (succ == null || !succ.marked) && pred.next(level) == succ;
+                }
+                if (!valid)
+                    continue;
+                
+                Node<K, V> n = new Node<K, V>(key, val, topLevel);
+                for (int level = 0; level < topLevel; level++)
+                    n.lazySet(level, succs[level]);
+                for (int level = 0; level < topLevel; level++)
+                    preds[level].set(level, n);
+                n.fullyLinked = true;
+                size.incrementAndGet();
+                return null;
+            } finally {
+                unlock(preds, locked);
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V delete(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        Node<K, V> victim = null;
+        Node<K, V>[] preds = new Node[MAX_LEVEL];
+        Node<K, V>[] succs = new Node[MAX_LEVEL];
+        while (true) {
+            int found = find(key, preds, succs);
+            if (victim == null) {
+                if (found == -1)
+                    return null;
+                Node<K, V> n = succs[found];
+                // A node that isn't fully linked, or that was found below its top level, is still being put.
+                if (!n.fullyLinked || n.topLevel != found + 1 || n.marked)
+                    return null;
+                n.lock.lock();
+                if (n.marked) {
+                    n.lock.unlock();
+                    return null; // Someone else deleted it first.
+                }
+                n.marked = true; // This is the moment the key leaves the list.
+                victim = n;
+            }
+            
+            int locked = -1;
+            try {
+                boolean valid = true;
+                Node<K, V> prev = null;
+                for (int level = 0; valid && level < victim.topLevel; level++) {
+                    Node<K, V> pred = preds[level];
+                    if (pred != prev) {
+                        pred.lock.lock();
+                        prev = pred;
+                    }
+                    locked = level;
+                    valid = !pred.marked && pred.next(level) == victim;
+                }
+                if (!valid)
+                    continue; // Keep the victim locked and marked, and find its neighbors again.
+                
+                for (int level = victim.topLevel - 1; level >= 0; level--)
+                    preds[level].set(level, victim.next(level));
+                V value = victim.val;
+                victim.lock.unlock();
+                size.decrementAndGet();
+                return value;
+            } finally {
+                unlock(preds, locked);
+            }
+        }
+    }
+    
+    /**
+     * Unlocks the distinct nodes among {@code preds[0]} to {@code preds[top]}.
+     */
+    private static <K, V> void unlock(Node<K, V>[] preds, int top) {
+        Node<K, V> prev = null;
+        for (int level = 0; level <= top; level++) {
+            if (preds[level] != prev) {
+                preds[level].lock.unlock();
+                prev = preds[level];
+            }
+        }
+    }
+    
+    /**
+     * Deletes every key that was in the list when this was called. Keys put while it runs may or may not survive.
+     */
+    public void clear() {
+        for (Node<K, V> n = first(head); n != null; n = first(n))
+            delete(n.key);
+    }
+    
+    /**
+     * Returns the first node after {@code n} on the bottom level that's in the list, or {@code null} if there is none.
+     */
+    private static <K, V> Node<K, V> first(Node<K, V> n) {
+        n = n.next(0);
+        while (n != null && (n.marked || !n.fullyLinked))
+            n = n.next(0);
+        return n;
+    }
+    
+    /**
+     * Returns the last node on the bottom level with a key less than {@code key}, or equal to it if {@code inclusive},
+     * whether or not it's in the list; or {@code head} if there is none. A {@code null} key stands for a key greater
+     * than all the others.
+     */
+    private Node<K, V> last(K key, boolean inclusive) {
+        Node<K, V> pred = head;
+        for (int level = levels.get() - 1; level >= 0; level--) {
+            Node<K, V> curr = pred.next(level);
+            while (curr != null && (key == null || before(curr.key, key, inclusive))) {
+                pred = curr;
+                curr = pred.next(level);
+            }
+        }
+        return pred;
+    }
+    
+    private static <K extends Comparable<K>> boolean before(K a, K b, boolean inclusive) {
+        int cmp = a.compareTo(b);
+        return inclusive ? cmp <= 0 : cmp < 0;
+    }
+    
+    public K min() {
+        Node<K, V> n = first(head);
+        return n == null ? null : n.key;
+    }
+    
+    public K max() {
+        return nearest(null, true, false);
+    }
+    
+    public K floor(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return nearest(key, true, true);
+    }
+    
+    public K ceiling(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return nearest(key, false, true);
+    }
+    
+    public K lower(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return nearest(key, true, false);
+    }
+    
+    public K higher(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return nearest(key, false, false);
+    }
+    
+    /**
+     * Returns the closest key in the list to {@code key} on one side of it.
+     * <p>
+     * Looking upward, that's the first node in the list after the last node below {@code key}. Looking downward, the
+     * last node below {@code key} may have been deleted, and there are no links back; so the search starts again from
+     * the top, below that node's key, until it lands on a node that's in the list.
+     * 
+     * @param key the key to search from; {@code null}, looking downward, stands for a key greater than all the others
+     * @param below whether to look for keys less than {@code key}, rather than greater
+     * @param inclusive whether {@code key} itself counts
+     * @return the closest key, or {@code null} if there is none
+     */
+    private K nearest(K key, boolean below, boolean inclusive) {
+        if (!below) {
+            Node<K, V> n = first(last(key, !inclusive));
+            return n == null ? null : n.key;
+        }
+        while (true) {
+            Node<K, V> n = last(key, inclusive);
+            if (n == head)
+                return null;
+            if (n.fullyLinked && !n.marked)
+                return n.key;
+            key = n.key;
+            inclusive = false;
+        }
+    }
+    
+    /**
+     * Returns a weakly consistent iterator over the mappings in key order.
+     * 
+     * @return an iterator over the mappings in this list
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(null, null);
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator(K fromKey, K toKey) {
+        return new EntryIterator<K, V>(first(fromKey == null ? head : last(fromKey, false)), toKey);
+    }
+    
+    public OrderedDictionary<K, V> headMap(K toKey) throws NullPointerException {
+        if (toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, null, toKey);
+    }
+    
+    public OrderedDictionary<K, V> tailMap(K fromKey) throws NullPointerException {
+        if (fromKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, null);
+    }
+    
+    public OrderedDictionary<K, V> subMap(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, toKey);
+    }
+    
+    public String toString() {
+        return "Concurrent Skip List";
+    }
+    
+    /**
+     * Walks the bottom level, skipping the nodes that aren't in the list when it gets to them.
+     */
+    private static class EntryIterator<K extends Comparable<K>, V> implements Iterator<Map.Entry<K, V>> {
+        private Node<K, V> next;
+        private final K toKey;
+        
+        public EntryIterator(Node<K, V> first, K toKey) {
+            this.next = first;
+            this.toKey = toKey;
+        }
+        
+        public boolean hasNext() {
+            return next != null && (toKey == null || next.key.compareTo(toKey) < 0);
+        }
+        
+        public Map.Entry<K, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node<K, V> n = next;
+            next = first(n);
+            return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, n.val);
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * A node, which is linked into the bottom {@code topLevel} levels of the list. Its links are its own elements,
+     * rather than a separate array's, which saves a pointer to follow on every step of a search.
+     */
+    @SuppressWarnings("serial")
+    private static class Node<K, V> extends AtomicReferenceArray<Node<K, V>> {
+        private final K key;
+        private volatile V val;
+        private final int topLevel;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean marked; // Set, under the lock, when the node is deleted
+        private volatile boolean fullyLinked; // Set once the node is linked into every one of its levels
+        
+        public Node(K key, V val, int topLevel) {
+            super(topLevel);
+            this.key = key;
+            this.val = val;
+            this.topLevel = topLevel;
+        }
+        
+        public Node<K, V> next(int level) {
+            return get(level);
+        }
+    }
+}
+
+class ConcurrentSkipListSupplier implements DictionarySupplier {
+    public ConcurrentSkipListSupplier() {}
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new ConcurrentSkipList<K, V>();
+    }
+    
+    public String toString() {
+        return "CSL";
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * CuckooHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A hash table using bucketized cuckoo hashing, where a lookup reads a bounded number of slots however full the table
+ * is, as long as no more than {@code 2 * BUCKET} keys share a hash code.
+ * <p>
+ * The slots are split into buckets of {@code BUCKET} slots each, and every key has two candidate buckets, picked by two
+ * different hash functions. A key is always in one of its two buckets or in a small stash on the side, so a lookup
+ * normally reads at most {@code 2 * BUCKET + STASH} slots. When both of a new key's buckets are full, a key is evicted
+ * from one of them and moved to its other bucket, which may evict another key, and so on; if that goes on for too long,
+ * the key left over goes into the stash. If the stash is full too, the table is rebuilt bigger, but only if it is more
+ * than {@code set} full and at most once per insert; otherwise the stash grows. Keys with equal hash codes have the
+ * same two buckets whatever the capacity, so rebuilding can't separate them, and past {@code 2 * BUCKET} of them the
+ * rest are kept in the stash; while it is bigger than {@code STASH} slots, lookups and deletes scan all of it. It
+ * shrinks back once it empties, or at the next rebuild. With four slots per bucket this works up to around 95%
+ * fullness.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class CuckooHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static double DEF_MAX = 0.90;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    
+    private static final int BUCKET = 4; // Slots per bucket
+    private static final int STASH = 4; // Slots in the stash after a rebuild; it grows when need be.
+    private static final int MAX_KICKS = 128; // How many evictions an insert tries before using the stash.
+    private static final int MIN_CAPACITY = 16; // The minimum number of slots; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    
+    // The key/value pairs are kept in parallel arrays; slot i is empty when keys[i] is null, and hashes[i] caches
+    // hash(keys[i]). Bucket b is slots b * BUCKET to b * BUCKET + BUCKET - 1. The stash works the same way, and is
+    // STASH slots long unless it has had to grow.
+    private K[] keys;
+    private V[] vals;
+    private int[] hashes;
+    private K[] stashKeys;
+    private V[] stashVals;
+    private int[] stashHashes;
+    private int stashed; // The number of keys in the stash.
+    private int size; // The current number of elements, including the stash.
+    private int capacity; // Current number of slots, not counting the stash.
+    private int seed = 0x2545f491; // State of the generator that picks which key to evict.
+    
+    private double maxFullness; // determines how full the array can get before resizing occurs
+    private double minFullness; // determines how empty the array can get before resizing occurs
+    private double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code CuckooHashtable} with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public CuckooHashtable(double maximum, double minimum, double set) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        
+        allocate(MIN_CAPACITY);
+    }
+    
+    public CuckooHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET);
+    }
+    
+    public CuckooHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    private int hash(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return Hashing.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns the first slot of the first bucket for a hash.
+     */
+    private int bucket1(int h) {
+        return (h & (capacity / BUCKET - 1)) * BUCKET;
+    }
+    
+    /**
+     * Returns the first slot of the second bucket for a hash. The second hash function mixes the first one again.
+     */
+    private int bucket2(int h) {
+        return (Hashing.spread(h + 0x9e3779b9) & (capacity / BUCKET - 1)) * BUCKET;
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or -1 if it isn't in either of its buckets.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot, or -1
+     */
+    private int getIndex(K key, int h) {
+        int b = bucket1(h);
+        for (int i = b; i < b + BUCKET; i++)
+            if (hashes[i] == h && key.equals(keys[i]))
+                return i;
+        b = bucket2(h);
+        for (int i = b; i < b + BUCKET; i++)
+            if (hashes[i] == h && key.equals(keys[i]))
+                return i;
+        return -1;
+    }
+    
+    /**
+     * Returns the stash slot holding {@code key}, or -1 if it isn't in the stash.
+     */
+    private int getStashIndex(K key, int h) {
+        if (stashed == 0)
+            return -1;
+        for (int i = 0; i < stashKeys.length; i++)
+            if (stashHashes[i] == h && key.equals(stashKeys[i]))
+                return i;
+        return -1;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        int h = hash(key);
+        int i = getIndex(key, h);
+        if (i >= 0)
+            return vals[i];
+        i = getStashIndex(key, h);
+        return i < 0 ? null : stashVals[i];
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        int h = hash(key);
+        return getIndex(key, h) >= 0 || getStashIndex(key, h) >= 0;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        for (int i = 0; i < capacity; i++)
+            if (keys[i] != null && value.equals(vals[i]))
+                return true;
+        for (int i = 0; i < stashKeys.length; i++)
+            if (stashKeys[i] != null && value.equals(stashVals[i]))
+                return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (K k : keys)
+            if (k != null)
+                set.add(k);
+        for (K k : stashKeys)
+            if (k != null)
+                set.add(k);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new SlotIterator<K, V>(keys, vals, stashKeys, stashVals);
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int h = hash(key);
+        int i = getIndex(key, h);
+        if (i >= 0) {
+            V previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        i = getStashIndex(key, h);
+        if (i >= 0) {
+            V previousValue = stashVals[i];
+            stashVals[i] = val;
+            return previousValue;
+        }
+        
+        size++;
+        insert(key, val, h, true);
+        resizeIfNeeded();
+        return null;
+    }
+    
+    /**
+     * Returns a free slot in the bucket starting at {@code b}, or -1 if it is full.
+     */
+    private int freeSlot(int b) {
+        for (int i = b; i < b + BUCKET; i++)
+            if (keys[i] == null)
+                return i;
+        return -1;
+    }
+    
+    /**
+     * Puts a key that is known not to be in the table into one of its buckets, evicting other keys if need be, or else
+     * into the stash. If the stash is full too, the table is rebuilt at twice the size first if {@code mayRebuild} is
+     * set and the table is more than {@code setFullness} full, and otherwise the stash grows.
+     * 
+     * @param key the key
+     * @param val the value
+     * @param h {@code hash(key)}
+     * @param mayRebuild whether the table may be rebuilt; false when this insert is itself part of a rebuild
+     */
+    private void insert(K key, V val, int h, boolean mayRebuild) {
+        int i = freeSlot(bucket1(h));
+        if (i < 0)
+            i = freeSlot(bucket2(h));
+        
+        for (int kicks = 0; i < 0 && kicks < MAX_KICKS; kicks++) {
+            // Both buckets are full; swap with a random key in one of them, and carry that key to its other bucket.
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int b = (seed & BUCKET) == 0 ? bucket1(h) : bucket2(h);
+            int j = b + (seed & (BUCKET - 1));
+            
+            K k = keys[j];
+            V v = vals[j];
+            int kh = hashes[j];
+            keys[j] = key;
+            vals[j] = val;
+            hashes[j] = h;
+            key = k;
+            val = v;
+            h = kh;
+            
+            i = freeSlot(bucket1(h) == b ? bucket2(h) : bucket1(h));
+        }
+        
+        if (i >= 0) {
+            keys[i] = key;
+            vals[i] = val;
+            hashes[i] = h;
+            return;
+        }
+        
+        int s = 0;
+        while (s < stashKeys.length && stashKeys[s] != null)
+            s++;
+        if (s == stashKeys.length) {
+            // A full stash only means the table is crowded if it is fairly full; otherwise the keys' hashes collide.
+            if (mayRebuild && size > capacity * setFullness) {
+                rebuild(2 * capacity);
+                insert(key, val, h, false);
+                return;
+            }
+            stashKeys = Arrays.copyOf(stashKeys, 2 * s);
+            stashVals = Arrays.copyOf(stashVals, 2 * s);
+            stashHashes = Arrays.copyOf(stashHashes, 2 * s);
+        }
+        stashKeys[s] = key;
+        stashVals[s] = val;
+        stashHashes[s] = h;
+        stashed++;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        int h = hash(key);
+        V value;
+        int i = getIndex(key, h);
+        if (i >= 0) {
+            value = vals[i];
+            keys[i] = null;
+            vals[i] = null;
+        } else {
+            i = getStashIndex(key, h);
+            if (i < 0)
+                return null;
+            value = stashVals[i];
+            stashKeys[i] = null;
+            stashVals[i] = null;
+            stashed--;
+        }
+        size--;
+        
+        // A slot may have opened up for a stashed key.
+        for (int s = 0; s < stashKeys.length && stashed > 0; s++) {
+            if (stashKeys[s] == null)
+                continue;
+            int j = freeSlot(bucket1(stashHashes[s]));
+            if (j < 0)
+                j = freeSlot(bucket2(stashHashes[s]));
+            if (j >= 0) {
+                keys[j] = stashKeys[s];
+                vals[j] = stashVals[s];
+                hashes[j] = stashHashes[s];
+                stashKeys[s] = null;
+                stashVals[s] = null;
+                stashed--;
+            }
+        }
+        if (stashed == 0 && stashKeys.length > STASH)
+            allocateStash();
+        
+        resizeIfNeeded();
+        return value;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        allocateStash();
+        size = 0;
+        resizeIfNeeded();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int newCapacity) {
+        keys = (K[]) new Comparable[newCapacity];
+        vals = (V[]) new Object[newCapacity];
+        hashes = new int[newCapacity];
+        allocateStash();
+        capacity = newCapacity;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocateStash() {
+        stashKeys = (K[]) new Comparable[STASH];
+        stashVals = (V[]) new Object[STASH];
+        stashHashes = new int[STASH];
+        stashed = 0;
+    }
+    
+    /**
+     * Resizes the array and copies over the elements if the size is out of bounds.
+     * 
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity != capacity)
+            rebuild(newCapacity);
+    }
+    
+    /**
+     * Moves every entry into a new array of {@code newCapacity} slots and an empty stash. An entry that can't be placed
+     * goes into the stash, which grows if it has to; the array doesn't grow again.
+     */
+    private void rebuild(int newCapacity) {
+        K[] oldKeys = keys;
+        V[] oldVals = vals;
+        int[] oldHashes = hashes;
+        K[] oldStashKeys = stashKeys;
+        V[] oldStashVals = stashVals;
+        int[] oldStashHashes = stashHashes;
+        
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++)
+            if (oldKeys[j] != null)
+                insert(oldKeys[j], oldVals[j], oldHashes[j], false);
+        for (int j = 0; j < oldStashKeys.length; j++)
+            if (oldStashKeys[j] != null)
+                insert(oldStashKeys[j], oldStashVals[j], oldStashHashes[j], false);
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return String.format("Cuckoo Hashtable");
+        else if (setFullness == DEF_SET)
+            return String.format("Cuckoo Hashtable (%.2f, %.2f)", maxFullness, minFullness);
+        else
+            return String.format("Cuckoo Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+class CuckooHashtableSupplier implements DictionarySupplier {
+    private double max;
+    private double min;
+    private double set;
+    
+    /**
+     * Constructs empty {@code CuckooHashtable}'s with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param setFullness the fullness when the arrays are resized
+     * 
+     * @see CuckooHashtable
+     */
+    public CuckooHashtableSupplier(double maximum, double minimum, double setFullness) {
+        max = maximum;
+        min = minimum;
+        set = setFullness;
+    }
+    
+    public CuckooHashtableSupplier(double maximum, double minimum) {
+        this(maximum, minimum, CuckooHashtable.DEF_SET);
+    }
+    
+    public CuckooHashtableSupplier() {
+        this(CuckooHashtable.DEF_MAX, CuckooHashtable.DEF_MIN);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new CuckooHashtable<K, V>(max, min, set);
+    }
+    
+    public String toString() {
+        if (max == CuckooHashtable.DEF_MAX && min == CuckooHashtable.DEF_MIN && set == CuckooHashtable.DEF_SET)
+            return "Cuckoo";
+        else if (set == 0.5)
+            return String.format("Cuckoo(%d/%d)", (int) (max * 100), (int) (min * 100));
+        else
+            return String.format("Cuckoo(%d/%d/%d)", (int) (max * 100), (int) (min * 100), (int) (set * 100));
+    }
+}
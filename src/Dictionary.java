@@ -4,16 +4,21 @@
  * Copyright (c) 2013 Jackson Scholl
  */
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * A map; maps keys to values.
+ * <p>
+ * A dictionary can be walked with a for-each loop over its entries, which visits every mapping once without copying the
+ * keys out first.
  * 
  * @param <K> Key type
  * @param <V> Value type
  * 
  */
-public interface Dictionary<K extends Comparable<K>, V> {
+public interface Dictionary<K extends Comparable<K>, V> extends Iterable<Map.Entry<K, V>> {
     /**
      * Returns the current number of key-value mappings.
      * 
@@ -63,6 +68,17 @@ public interface Dictionary<K extends Comparable<K>, V> {
      */
     Set<K> getAllKeys();
     
+    /**
+     * Returns an iterator over the key-value mappings in this map. The order is up to the implementation. The map must
+     * not be changed while the iterator is in use, and the iterator doesn't support {@code remove}. Lookups don't
+     * count as changes, except in a map that reorganizes itself on lookups, such as a {@link LinkedList} with a
+     * {@link LinkedList.Policy} other than {@code NONE}, or a hashtable with such lists for buckets; there the
+     * iterator may throw a {@link java.util.ConcurrentModificationException} after a lookup.
+     * 
+     * @return an iterator over the mappings in this map
+     */
+    Iterator<Map.Entry<K, V>> iterator();
+    
     /**
      * Associates the specified value with the specified key in this map. If the map previously contained a mapping for
      * the key, the old value is replaced by the specified value.
@@ -1,5 +1,7 @@
 import java.io.*;
+import java.lang.management.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * Test client for the dictionary implementations
@@ -13,9 +15,37 @@ public class DictionaryClient {
     private static DictionarySupplier RBTsup = new RedBlackTreeSupplier();
     private static DictionarySupplier LLsup = new LinkedListSupplier();
     
-    private static DictionarySupplier[] mainDictSups = new DictionarySupplier[] { LLsup, RBTsup,
-            new ProbingHashtableSupplier(), new ChainingHashtableSupplier(LLsup),
-            new ChainingHashtableSupplier(RBTsup), new ChainingHashtableSupplier(new ProbingHashtableSupplier()) };
+    private static DictionarySupplier adaptiveSup = new AdaptiveBucketSupplier();
+    
+    // Only takes String keys, so it just runs the String tests and its own.
+    private static DictionarySupplier ARTsup = new AdaptiveRadixTreeSupplier();
+    
+    private static DictionarySupplier[] mainDictSups = new DictionarySupplier[] { LLsup, RBTsup, adaptiveSup,
+            new PersistentRedBlackTreeSupplier(), new BPlusTreeSupplier(), new ConcurrentSkipListSupplier(),
+            new ProbingHashtableSupplier(), new ProbingHashtableSupplier(0.75, 0.25, 0.5, true),
+            new RobinHoodHashtableSupplier(), new SwissHashtableSupplier(), new CuckooHashtableSupplier(),
+            new HopscotchHashtableSupplier(), new ChainingHashtableSupplier(LLsup),
+            new ChainingHashtableSupplier(LLsup, 7.0, 5.0, 3.0, true), new ChainingHashtableSupplier(RBTsup),
+            new ChainingHashtableSupplier(adaptiveSup), new ChainingHashtableSupplier(new UnrolledListSupplier()),
+            new ChainingHashtableSupplier(new ProbingHashtableSupplier()) };
+    
+    // These only hold Integer keys and values, so they skip the String tests.
+    private static DictionarySupplier[] intDictSups = new DictionarySupplier[] { new IntHashtableSupplier(),
+            new OffHeapHashtableSupplier() };
+    
+    // These resize incrementally, and also run the test of iterating during a resize.
+    private static DictionarySupplier[] incrementalDictSups = new DictionarySupplier[] {
+            new ProbingHashtableSupplier(0.75, 0.25, 0.5, true),
+            new ChainingHashtableSupplier(LLsup, 7.0, 5.0, 3.0, true) };
+    
+    // Linked lists that reorganize themselves as they're used; they run the String tests and their own.
+    private static DictionarySupplier[] selfOrganizingSups = new DictionarySupplier[] {
+            new LinkedListSupplier(LinkedList.Policy.MOVE_TO_FRONT),
+            new LinkedListSupplier(LinkedList.Policy.TRANSPOSE) };
+    
+    // These keep their keys sorted, and also run the ordered navigation tests.
+    private static DictionarySupplier[] orderedDictSups = new DictionarySupplier[] { RBTsup, new BPlusTreeSupplier(),
+            new BPlusTreeSupplier(4), new ConcurrentSkipListSupplier() };
     
     public static final boolean VERBOSE = true;
     
@@ -41,19 +71,122 @@ public class DictionaryClient {
             for (int i = 0; i < 5; i++) {
                 test6h(stSup, 500);
             }
+            test26h(stSup, 8);
+            
+            System.out.println();
+        }
+        
+        for (DictionarySupplier stSup : intDictSups) {
+            r = new Random(1176072517698283250L);
+            
+            System.out.printf("====%s====%n", stSup.<Integer, Integer> getNew().toString());
+            test4h(stSup, 200);
+            
+            for (int i = 0; i < 5; i++) {
+                test6h(stSup, 500);
+            }
+            
+            System.out.println();
+        }
+        
+        for (DictionarySupplier stSup : incrementalDictSups) {
+            r = new Random(1176072517698283250L);
+            
+            System.out.printf("====%s====%n", stSup.<Integer, Integer> getNew().toString());
+            test27h(stSup, 500);
+            System.out.println();
+        }
+        
+        for (DictionarySupplier stSup : orderedDictSups) {
+            r = new Random(1176072517698283250L);
+            
+            System.out.printf("====Ordered %s====%n", stSup.<Integer, Integer> getNew().toString());
+            test16h(stSup, 2000);
+            System.out.println();
+        }
+        
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", "Order Statistics");
+        test17h(2000);
+        test18h(2000);
+        System.out.println();
+        
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", new PersistentRedBlackTree<Integer, Integer>().toString());
+        test20h(2000);
+        System.out.println();
+        
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", new AdaptiveRadixTree<Integer>().toString());
+        test1h(ARTsup);
+        test2h(ARTsup);
+        test3h(ARTsup);
+        test23h(2000);
+        System.out.println();
+        
+        for (DictionarySupplier stSup : selfOrganizingSups) {
+            r = new Random(1176072517698283250L);
             
+            System.out.printf("====%s====%n", stSup.<String, String> getNew().toString());
+            test1h(stSup);
+            test2h(stSup);
+            test3h(stSup);
+            test24h(stSup, 2000);
+            test28h(stSup, 500);
+            test28h(new ChainingHashtableSupplier(stSup), 500);
             System.out.println();
         }
         
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", new UnrolledList<Integer, Integer>(3).toString());
+        test1h(new UnrolledListSupplier(3));
+        test2h(new UnrolledListSupplier(3));
+        test3h(new UnrolledListSupplier(3));
+        test25h(2000);
+        System.out.println();
+        
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", new LongHashtable().toString());
+        test5h(2000);
+        System.out.println();
+        
+        System.out.printf("====%s====%n", "Mapped Hashtable");
+        test11h(2000);
+        System.out.println();
+        
         long middle = System.currentTimeMillis();
         System.out.printf("%.3f seconds for correctness testing%n%n", (middle - start) / 1000.0);
         
-        if (middle - start < 1000) {
+        // The concurrency stress tests take long and vary with the scheduler, so they are left out of the timing above.
+        r = new Random(1176072517698283250L);
+        System.out.printf("====%s====%n", "Concurrency");
+        test21h(20000, 3);
+        test22h(10000, 4);
+        System.out.println();
+        
+        // The benchmarks always run unless asked not to; how long correctness testing took says too little about the
+        // machine to decide by.
+        if (!Arrays.asList(args).contains("-nobenchmark")) {
             test7(30, 10, 3, 0);
             // test7(100, 10, 3, 0);
             // test7(1000, 10, 3, 1, 0);
             // test7(10000, 10, 3, 1, 0);
             // test7(100000, 10, 3, 1, 0);
+            test8(20, 10000);
+            test9(5, 100000);
+            test10(3, 100000);
+            // test10(3, 1000000);
+            test12(8, 100000);
+            test13(8, 200000);
+            test14(8, 50);
+            test15(20, 100000);
+            test19(8, 200000);
+            test22(8, 200000);
+            test23(8, 200000);
+            test24(8, 500, 100000);
+            test25(8, 200000);
+        } else {
+            System.out.println("The benchmarks were skipped because of -nobenchmark.");
         }
         
         long end = System.currentTimeMillis();
@@ -175,182 +308,1981 @@ public class DictionaryClient {
             st.put(x, x + 1);
         }
         
-        for (int x : st.getAllKeys()) {
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : st) {
+            int x = entry.getKey();
+            assert entry.getValue() == x + 1;
             assert st.get(x) == x + 1;
             assert st.containsKey(x);
             assert st.containsValue(x + 1);
+            count++;
         }
+        assert count == st.size();
         
         if (VERBOSE) {
             System.out.printf("Test #4, n=%d: passed%n", n);
         }
     }
     
-    private static void test6h(DictionarySupplier stSup, int n) {
-        final int MAX = 2 * n;
-        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
-        Dictionary<Integer, Integer> st = stSup.getNew();
+    /**
+     * Checks {@link LongHashtable} against a {@code HashMap}, through both the primitive and the boxed methods. Keys
+     * are spread over the whole {@code long} range, plus a small range around zero so that the zero key and collisions
+     * get exercised.
+     * 
+     * @param n number of operations
+     */
+    private static void test5h(int n) {
+        final long NONE = -1L;
+        Map<Long, Long> map = new HashMap<Long, Long>();
+        LongHashtable st = new LongHashtable(0.75, 0.25, 0.5, NONE);
+        
+        for (int i = 0; i < n; i++) {
+            long k = r.nextBoolean() ? r.nextLong() : (long) (r.nextDouble() * 64) - 32;
+            int c = (int) (r.nextDouble() * 5);
+            
+            if (c == 0) { // get
+                Long x = map.get(k);
+                assert st.get(k) == (x == null ? NONE : x);
+                assert st.containsKey(k) == (x != null);
+                Long y = st.get(Long.valueOf(k));
+                assert x == null ? y == null : x.equals(y);
+            } else if (c == 1 || c == 2) { // put
+                long v = r.nextLong() >>> 1;
+                Long x = map.put(k, v);
+                assert st.put(k, v) == (x == null ? NONE : x);
+            } else if (c == 3) { // delete
+                Long x = map.remove(k);
+                Long y = st.delete(Long.valueOf(k));
+                assert x == null ? y == null : x.equals(y);
+            } else if (c == 4) { // size, keys
+                assert map.size() == st.size();
+                assert map.keySet().equals(st.getAllKeys());
+                for (Map.Entry<Long, Long> entry : st) {
+                    assert entry.getValue().equals(map.get(entry.getKey()));
+                }
+            }
+        }
+        
+        for (long k : map.keySet()) {
+            assert st.containsValue(map.get(k));
+            assert st.delete(k) == map.get(k);
+        }
+        assert st.isEmpty();
+        
+        if (VERBOSE) {
+            System.out.printf("Test #5, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks the ordered navigation methods and range views of an {@link OrderedDictionary} against a {@link TreeMap},
+     * over a random mix of operations on a small key range, so that the searches often land on and next to keys.
+     */
+    private static void test16h(DictionarySupplier stSup, int n) {
+        final int RANGE = 200;
+        TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        OrderedDictionary<Integer, Integer> st = (OrderedDictionary<Integer, Integer>) stSup
+                .<Integer, Integer> getNew();
+        
+        assert st.min() == null && st.max() == null && st.floor(0) == null && st.ceiling(0) == null;
         
         for (int i = 0; i < n; i++) {
+            int k = r.nextInt(RANGE);
             int c = (int) (r.nextDouble() * 6);
             
-            if (c == 0) { // Get
-                int k = (int) (r.nextDouble() * MAX);
-                Integer x = map.get(k);
-                Integer y = st.get(k);
-                if (x == null) {
-                    assert y == null;
+            if (c == 0 || c == 1) { // put
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c == 2) { // delete
+                assert equal(st.delete(k), map.remove(k));
+            } else if (c == 3) { // navigation
+                assert equal(st.floor(k), map.floorKey(k));
+                assert equal(st.ceiling(k), map.ceilingKey(k));
+                assert equal(st.lower(k), map.lowerKey(k));
+                assert equal(st.higher(k), map.higherKey(k));
+                assert equal(st.min(), map.isEmpty() ? null : map.firstKey());
+                assert equal(st.max(), map.isEmpty() ? null : map.lastKey());
+            } else if (c == 4) { // views
+                int from = r.nextInt(RANGE);
+                int to = from + r.nextInt(RANGE / 4);
+                test16h(st.subMap(from, to), map.subMap(from, to), k);
+                test16h(st.headMap(to), map.headMap(to), k);
+                test16h(st.tailMap(from), map.tailMap(from), k);
+                test16h(st.tailMap(from).headMap(to), map.subMap(from, to), k);
+            } else if (c == 5) { // writes through a view
+                int from = r.nextInt(RANGE);
+                int to = from + r.nextInt(RANGE / 4);
+                OrderedDictionary<Integer, Integer> view = st.subMap(from, to);
+                if (k >= from && k < to) {
+                    assert equal(view.put(k, i), map.put(k, i));
                 } else {
-                    assert x.equals(y);
+                    try {
+                        view.put(k, i);
+                        assert false : "put outside of the view's range";
+                    } catch (IllegalArgumentException e) {}
+                    assert equal(view.delete(k), null);
                 }
-            } else if (c == 1) { // put
-                int k = (int) (r.nextDouble() * MAX);
-                int v = (int) (r.nextDouble() * MAX);
-                Integer x = map.put(k, v);
-                
-                Integer y = st.put(k, v);
-                if (x == null) {
-                    assert y == null;
-                } else {
-                    assert x.equals(y);
+                if (r.nextInt(20) == 0) {
+                    view.clear();
+                    map.subMap(from, to).clear();
                 }
-            } else if (c == 2) { // size, isEmpty
-                assert map.size() == st.size();
-                assert map.isEmpty() == st.isEmpty();
-            } else if (c == 3) {
-                int k = (int) (r.nextDouble() * MAX);
-                boolean x = map.containsKey(k);
-                boolean y = st.containsKey(k);
-                assert x == y;
-            } else if (c == 4) {
-                int v = (int) (r.nextDouble() * MAX);
-                boolean x = map.containsValue(v);
-                boolean y = st.containsValue(v);
-                assert x == y;
-            } else if (c == 5) {
-                Set<Integer> x = map.keySet();
-                Set<Integer> y = st.getAllKeys();
-                assert x.equals(y);
-            } else {
-                System.out.println("? " + c);
             }
+            assert st.size() == map.size();
+        }
+        
+        Iterator<Map.Entry<Integer, Integer>> it = st.iterator();
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assert entry.equals(it.next());
         }
+        assert !it.hasNext();
         
         if (VERBOSE) {
-            System.out.printf("Test #6, n=%d: passed%n", n);
+            System.out.printf("Test #16, n=%d: passed%n", n);
         }
     }
     
-    private static void test7(int REP, double... amounts) {
-        int PRINTS;
-        if (VERBOSE) {
-            PRINTS = 100;
-        } else {
-            PRINTS = 5;
-        }
-        
-        double[] limits = getLimits(amounts);
-        int n = 10000;
+    private static void test16h(OrderedDictionary<Integer, Integer> view, SortedMap<Integer, Integer> map, int k) {
+        NavigableMap<Integer, Integer> nav = new TreeMap<Integer, Integer>(map);
         
-        System.out.printf("Test 7 started; n=%d, rep=%d%n", n, REP);
-        long startMillis = System.currentTimeMillis();
+        assert view.size() == map.size();
+        assert view.isEmpty() == map.isEmpty();
+        assert equal(view.min(), map.isEmpty() ? null : map.firstKey());
+        assert equal(view.max(), map.isEmpty() ? null : map.lastKey());
+        assert equal(view.floor(k), nav.floorKey(k));
+        assert equal(view.ceiling(k), nav.ceilingKey(k));
+        assert equal(view.lower(k), nav.lowerKey(k));
+        assert equal(view.higher(k), nav.higherKey(k));
+        assert equal(view.get(k), map.get(k));
         
-        DictionarySupplier[] confs = new DictionarySupplier[] { new LinkedListSupplier(), new RedBlackTreeSupplier(),
-                new ProbingHashtableSupplier(0.55, 0.45), new ProbingHashtableSupplier(0.60, 0.40),
-                new ProbingHashtableSupplier(0.65, 0.38), new ProbingHashtableSupplier(0.70, 0.36),
-                new ProbingHashtableSupplier(0.80, 0.30), new ProbingHashtableSupplier(0.90, 0.27),
-                new ProbingHashtableSupplier(0.95, 0.15), new ChainingHashtableSupplier(LLsup),
-                new ChainingHashtableSupplier(RBTsup), new MockSupplier() };
+        Iterator<Map.Entry<Integer, Integer>> it = view.iterator();
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assert entry.equals(it.next());
+        }
+        assert !it.hasNext();
+    }
+    
+    /**
+     * Checks {@code rank}, {@code select} and {@code countInRange} of a {@link RedBlackTree} against a {@link TreeMap},
+     * with random puts and deletes in between.
+     */
+    private static void test17h(int n) {
+        final int RANGE = 500;
+        TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        RedBlackTree<Integer, Integer> st = new RedBlackTree<Integer, Integer>();
         
-        int len = confs.length;
+        for (int i = 0; i < n; i++) {
+            int k = r.nextInt(RANGE);
+            int c = (int) (r.nextDouble() * 4);
+            
+            if (c == 0 || c == 1) { // put
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c == 2) { // delete
+                assert equal(st.delete(k), map.remove(k));
+            } else if (c == 3) { // order statistics
+                int rank = map.headMap(k).size();
+                assert st.rank(k) == rank;
+                if (rank < map.size()) {
+                    assert equal(st.select(rank), map.ceilingKey(k));
+                }
+                int to = k + r.nextInt(RANGE / 4);
+                assert st.countInRange(k, to) == map.subMap(k, to).size();
+            }
+        }
         
-        String s1 = "";
-        String s2 = "";
-        for (DictionarySupplier conf : confs) {
-            s1 += String.format("  %-13s", conf.toString());
-            s2 += String.format("%s,", conf.toString());
+        int i = 0;
+        for (int k : map.keySet()) {
+            assert st.select(i) == k && st.rank(k) == i;
+            i++;
         }
-        System.out.println(s1);
-        outStream.println(s2);
+        try {
+            st.select(map.size());
+            assert false : "select past the end";
+        } catch (IndexOutOfBoundsException e) {}
         
-        StatsList[] lists = new StatsList[len];
-        for (int i = 0; i < len; i++) {
-            lists[i] = new StatsList();
+        if (VERBOSE) {
+            System.out.printf("Test #17, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks {@link RedBlackTree#fromSorted} and {@link RedBlackTree#putAllSorted} against a {@link TreeMap}, and that
+     * the built tree still works with ordinary puts and deletes.
+     */
+    private static void test18h(int n) {
+        final int RANGE = 4 * n;
+        TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < n; i++) {
+            int k = r.nextInt(RANGE);
+            map.put(k, k);
         }
         
-        for (int i = 1; i <= REP; i++) {
-            for (int j = 0; j < len; j++) {
-                Dictionary<Integer, Integer> st = confs[j].getNew();
-                double mean = test7h(st, n, limits);
-                outStream.printf("%.5f,", mean);
-                lists[j].add(mean);
+        RedBlackTree<Integer, Integer> st = RedBlackTree.fromSorted(map.entrySet().iterator());
+        assert st.size() == map.size();
+        
+        // The small batches go in with puts, and the big one by rebuilding the tree.
+        int[] batchSizes = { n / 4, n / 64, 4 * n };
+        for (int round = 0; round < batchSizes.length; round++) {
+            TreeMap<Integer, Integer> batch = new TreeMap<Integer, Integer>();
+            for (int i = 0; i < batchSizes[round]; i++) {
+                int k = r.nextInt(RANGE);
+                batch.put(k, -k);
             }
+            st.putAllSorted(batch.entrySet().iterator());
+            map.putAll(batch);
             
-            outStream.println();
-            
-            if (i % (REP / PRINTS + 1) == 0) {
-                for (int j = 0; j < len; j++) {
-                    StatsList l = lists[j];
-                    System.out.printf("%6.2f (%5.3g) ", l.mean(), l.stddevMean());
+            for (int i = 0; i < n / 4; i++) {
+                int k = r.nextInt(RANGE);
+                if (r.nextBoolean()) {
+                    assert equal(st.put(k, k), map.put(k, k));
+                } else {
+                    assert equal(st.delete(k), map.remove(k));
                 }
-                System.out.println();
             }
+            
+            assert st.size() == map.size();
+            int i = 0;
+            Iterator<Map.Entry<Integer, Integer>> it = st.iterator();
+            for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+                assert entry.equals(it.next());
+                assert st.select(i++).equals(entry.getKey());
+            }
+            assert !it.hasNext();
         }
-        System.out.println(s1 + "\n");
-        outStream.println(s2 + "\n");
         
-        for (int j = 0; j < len; j++) {
-            for (int i = 0; i < 3; i++) {
-                lists[j].remove(0);
-            }
-            
-            System.out.printf("%-12s %s%n", confs[j], lists[j]);
-            outStream.printf("%-12s %s%n", confs[j], lists[j]);
+        try {
+            st.putAllSorted(Arrays.asList(map.lastEntry(), map.firstEntry()).iterator());
+            assert map.size() < 2 : "putAllSorted took keys out of order";
+        } catch (IllegalArgumentException e) {
+            assert st.size() == map.size();
         }
         
-        StatsList mock = lists[len - 1];
-        outStream.printf("%nSubtracting the mock (%.3f [%.5f]):%n", mock.mean(), mock.stddevMean());
+        if (VERBOSE) {
+            System.out.printf("Test #18, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks that snapshots of a {@link PersistentRedBlackTree} keep the contents they were taken with while the tree
+     * goes on changing, and that they can't be changed themselves.
+     */
+    private static void test20h(int n) {
+        final int RANGE = 500;
+        TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+        PersistentRedBlackTree<Integer, Integer> st = new PersistentRedBlackTree<Integer, Integer>();
+        List<PersistentRedBlackTree<Integer, Integer>> snapshots;
+        snapshots = new ArrayList<PersistentRedBlackTree<Integer, Integer>>();
+        List<TreeMap<Integer, Integer>> copies = new ArrayList<TreeMap<Integer, Integer>>();
         
-        for (int j = 0; j < len - 1; j++) {
-            outStream.printf("%-12s %.3f (%.5f)%n", confs[j], lists[j].mean() - mock.mean(), lists[j].stddevMean());
+        for (int i = 0; i < n; i++) {
+            int k = r.nextInt(RANGE);
+            if (r.nextInt(3) < 2) {
+                assert equal(st.put(k, i), map.put(k, i));
+            } else {
+                assert equal(st.delete(k), map.remove(k));
+            }
+            if (i % (n / 20) == 0) {
+                snapshots.add(st.snapshot());
+                copies.add(new TreeMap<Integer, Integer>(map));
+            }
         }
         
-        long endMillis = System.currentTimeMillis();
-        System.out.printf("Test 7 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
-        outStream.printf("Test 7 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        for (int i = 0; i < snapshots.size(); i++) {
+            PersistentRedBlackTree<Integer, Integer> snapshot = snapshots.get(i);
+            assert snapshot.size() == copies.get(i).size();
+            Iterator<Map.Entry<Integer, Integer>> it = snapshot.iterator();
+            for (Map.Entry<Integer, Integer> entry : copies.get(i).entrySet()) {
+                assert entry.equals(it.next());
+            }
+            assert !it.hasNext();
+        }
+        
+        try {
+            snapshots.get(0).put(0, 0);
+            assert false : "put into a snapshot";
+        } catch (UnsupportedOperationException e) {}
+        
+        if (VERBOSE) {
+            System.out.printf("Test #20, n=%d: passed%n", n);
+        }
     }
     
-    private static double test7h(Dictionary<Integer, Integer> st, int n, double[] limits) {
-        final int MAX = (int) (1.5 * SIZE);
+    /**
+     * Runs readers on snapshots of a {@link PersistentRedBlackTree} while one writer puts the keys {@code 0} to
+     * {@code n - 1} in order and then deletes them in order. So every version holds a run of consecutive keys, and each
+     * reader checks that every snapshot it takes does.
+     */
+    private static void test21h(final int n, int readers) {
+        final PersistentRedBlackTree<Integer, Integer> st = new PersistentRedBlackTree<Integer, Integer>();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicLong snapshots = new AtomicLong();
         
-        TreeSet<Integer> set = new TreeSet<Integer>(st.getAllKeys());
-        long start = System.nanoTime();
+        Thread[] threads = new Thread[readers];
+        for (int t = 0; t < readers; t++) {
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            PersistentRedBlackTree<Integer, Integer> snapshot = st.snapshot();
+                            int size = snapshot.size();
+                            Integer expected = null;
+                            int seen = 0;
+                            for (Map.Entry<Integer, Integer> entry : snapshot) {
+                                if (expected != null && !expected.equals(entry.getKey()))
+                                    throw new AssertionError("Gap before " + entry.getKey());
+                                if (!entry.getKey().equals(snapshot.get(entry.getKey())))
+                                    throw new AssertionError("Wrong value for " + entry.getKey());
+                                expected = entry.getKey() + 1;
+                                seen++;
+                            }
+                            if (seen != size)
+                                throw new AssertionError("Size " + size + " but " + seen + " keys");
+                            snapshots.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
         
         for (int i = 0; i < n; i++) {
-            double d = r.nextDouble();
-            int c;
-            for (c = 0; c < limits.length; c++) {
-                if (d < limits[c]) {
-                    break;
-                }
+            st.put(i, i);
+        }
+        for (int i = 0; i < n; i++) {
+            st.delete(i);
+        }
+        done.set(true);
+        
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
             }
-            
-            if (c == 0) { // Get
-                if (set.size() > 0) {
-                    Integer rn = (int) (r.nextDouble() * MAX);
-                    st.get(rn);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assert st.isEmpty();
+        
+        if (VERBOSE) {
+            System.out.printf("Test #21, n=%d, %d readers, %d snapshots: passed%n", n, readers, snapshots.get());
+        }
+    }
+    
+    /**
+     * Runs {@code threads} writers on one {@link ConcurrentSkipList}, each putting and deleting its own share of the
+     * keys (those equal to its number, mod {@code threads}) and checking its own keys against a {@code TreeMap}, while
+     * a reader walks the list over and over, checking that the keys come out in order. Afterwards the list has to hold
+     * exactly what the writers' maps do.
+     */
+    private static void test22h(final int n, final int threads) {
+        final int RANGE = 4000;
+        final ConcurrentSkipList<Integer, Integer> st = new ConcurrentSkipList<Integer, Integer>();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicLong walks = new AtomicLong();
+        
+        final List<TreeMap<Integer, Integer>> maps = new ArrayList<TreeMap<Integer, Integer>>();
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final TreeMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+            final Random random = new Random(r.nextLong());
+            maps.add(map);
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < n; i++) {
+                            int k = random.nextInt(RANGE / threads) * threads + id;
+                            int op = random.nextInt(4);
+                            if (op < 2) {
+                                if (!equal(st.put(k, i), map.put(k, i)))
+                                    throw new AssertionError("Wrong put result for " + k);
+                            } else if (op == 2) {
+                                if (!equal(st.delete(k), map.remove(k)))
+                                    throw new AssertionError("Wrong delete result for " + k);
+                            } else {
+                                if (!equal(st.get(k), map.get(k)))
+                                    throw new AssertionError("Wrong value for " + k);
+                                st.get(random.nextInt(RANGE)); // Someone else's key, most likely
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        Integer last = null;
+                        for (Map.Entry<Integer, Integer> entry : st) {
+                            if (last != null && last.compareTo(entry.getKey()) >= 0)
+                                throw new AssertionError(entry.getKey() + " came after " + last);
+                            last = entry.getKey();
+                        }
+                        walks.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
                 }
-            } else if (c == 1) { // put
-                int k = (int) (r.nextDouble() * MAX);
-                int v = r.nextInt();
-                st.put(k, v);
-            } else if (c == 2) { // delete
-                Integer k = (int) (r.nextDouble() * MAX);
-                st.delete(k);
             }
+        });
+        
+        reader.start();
+        for (Thread writer : writers) {
+            writer.start();
         }
-        long end = System.nanoTime();
-        return ((double) (end - start)) / n;
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            done.set(true);
+            reader.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        
+        TreeMap<Integer, Integer> all = new TreeMap<Integer, Integer>();
+        for (TreeMap<Integer, Integer> map : maps) {
+            all.putAll(map);
+        }
+        assert st.size() == all.size();
+        Iterator<Map.Entry<Integer, Integer>> it = st.iterator();
+        for (Map.Entry<Integer, Integer> entry : all.entrySet()) {
+            assert entry.equals(it.next());
+        }
+        assert !it.hasNext();
+        for (int i = 0; i < 100; i++) {
+            int k = r.nextInt(RANGE);
+            assert equal(st.floor(k), all.floorKey(k));
+            assert equal(st.higher(k), all.higherKey(k));
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #22, n=%d, %d writers, %d walks: passed%n", n, threads, walks.get());
+        }
+    }
+    
+    /**
+     * Checks an {@link AdaptiveRadixTree} against a {@code TreeMap}, over a random mix of operations on short keys from
+     * a small alphabet, so that many keys are prefixes of others and nodes keep growing, shrinking, splitting and
+     * merging. The alphabet has {@code char}s whose high bytes differ, too. Every so often, the order of the whole tree
+     * and of a random prefix of it is checked.
+     */
+    private static void test23h(int n) {
+        final char[] ALPHABET = { 'a', 'b', 'c', 'd', '\u0161', '\uff0e' };
+        TreeMap<String, Integer> map = new TreeMap<String, Integer>();
+        AdaptiveRadixTree<Integer> st = new AdaptiveRadixTree<Integer>();
+        
+        for (int i = 0; i < n; i++) {
+            char[] chars = new char[r.nextInt(5)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = ALPHABET[r.nextInt(j == 0 ? ALPHABET.length : 3)];
+            }
+            String k = new String(chars);
+            
+            int c = r.nextInt(10);
+            if (c < 5) {
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c < 8) {
+                assert equal(st.delete(k), map.remove(k));
+            } else {
+                assert equal(st.get(k), map.get(k));
+            }
+            assert st.size() == map.size();
+            
+            if (i % 50 == 0) {
+                Iterator<Map.Entry<String, Integer>> it = st.iterator();
+                for (Map.Entry<String, Integer> entry : map.entrySet()) {
+                    assert entry.equals(it.next());
+                }
+                assert !it.hasNext();
+                
+                String prefix = k.substring(0, r.nextInt(k.length() + 1));
+                it = st.prefixIterator(prefix);
+                for (Map.Entry<String, Integer> entry : map.tailMap(prefix).entrySet()) {
+                    if (!entry.getKey().startsWith(prefix))
+                        break;
+                    assert entry.equals(it.next());
+                }
+                assert !it.hasNext();
+            }
+        }
+        
+        for (String k : new ArrayList<String>(map.keySet())) {
+            assert equal(st.delete(k), map.remove(k));
+        }
+        assert st.isEmpty() && !st.iterator().hasNext();
+        
+        if (VERBOSE) {
+            System.out.printf("Test #23, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks a self-organizing {@link LinkedList} against a {@code HashMap}, with lookups skewed toward a few keys so
+     * that the list keeps reorganizing itself, and checks that the hottest key has made its way to the front.
+     */
+    private static void test24h(DictionarySupplier stSup, int n) {
+        final int RANGE = 100;
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        Dictionary<Integer, Integer> st = stSup.getNew();
+        
+        for (int i = 0; i < n; i++) {
+            int k = r.nextBoolean() ? r.nextInt(3) : r.nextInt(RANGE);
+            int c = r.nextInt(10);
+            if (c < 3) {
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c < 4) {
+                assert equal(st.delete(k), map.remove(k));
+            } else {
+                assert equal(st.get(k), map.get(k));
+                assert st.containsKey(k) == map.containsKey(k);
+            }
+            assert st.size() == map.size();
+        }
+        
+        assert sameEntries(st, map);
+        
+        st.put(-1, -1);
+        for (int i = 0; i < st.size(); i++) { // Enough for it to get there one place at a time
+            st.get(-1);
+        }
+        assert st.iterator().next().getKey() == -1;
+        
+        if (VERBOSE) {
+            System.out.printf("Test #24, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks an {@link UnrolledList} with small chunks against a {@code HashMap}, so that chunks keep filling, emptying
+     * and being unlinked.
+     */
+    private static void test25h(int n) {
+        final int RANGE = 40;
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        UnrolledList<Integer, Integer> st = new UnrolledList<Integer, Integer>(3);
+        
+        for (int i = 0; i < n; i++) {
+            int k = r.nextInt(RANGE);
+            int c = r.nextInt(10);
+            if (c < 4) {
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c < 8) {
+                assert equal(st.delete(k), map.remove(k));
+            } else {
+                assert equal(st.get(k), map.get(k));
+            }
+            assert st.size() == map.size();
+            
+            if (i % 20 == 0) {
+                assert sameEntries(st, map);
+            }
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #25, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Checks a dictionary against a {@code HashMap} with {@code 2^blocks} keys that all have the same hash code:
+     * strings of {@code blocks} two-character blocks, each "Aa" or "BB", which hash alike.
+     */
+    private static void test26h(DictionarySupplier stSup, int blocks) {
+        List<String> keys = new ArrayList<String>();
+        keys.add("");
+        for (int b = 0; b < blocks; b++) {
+            List<String> longer = new ArrayList<String>(2 * keys.size());
+            for (String k : keys) {
+                longer.add(k + "Aa");
+                longer.add(k + "BB");
+            }
+            keys = longer;
+        }
+        Collections.shuffle(keys, r);
+        
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        Dictionary<String, Integer> st = stSup.getNew();
+        for (int i = 0; i < keys.size(); i++) {
+            assert keys.get(i).hashCode() == keys.get(0).hashCode();
+            assert equal(st.put(keys.get(i), i), map.put(keys.get(i), i));
+            assert st.size() == map.size();
+        }
+        for (String k : keys)
+            assert equal(st.get(k), map.get(k));
+        
+        for (int i = 0; i < 4 * keys.size(); i++) {
+            String k = keys.get(r.nextInt(keys.size()));
+            int c = r.nextInt(3);
+            if (c == 0) {
+                assert equal(st.put(k, i), map.put(k, i));
+            } else if (c == 1) {
+                assert equal(st.delete(k), map.remove(k));
+            } else {
+                assert equal(st.get(k), map.get(k));
+                assert st.containsKey(k) == map.containsKey(k);
+            }
+            assert st.size() == map.size();
+        }
+        
+        assert sameEntries(st, map);
+        for (String k : keys)
+            st.delete(k);
+        assert st.isEmpty();
+        
+        if (VERBOSE) {
+            System.out.printf("Test #26, n=%d: passed%n", keys.size());
+        }
+    }
+    
+    /**
+     * Grows a dictionary to {@code n} keys and shrinks it back, and after every other operation walks it while looking
+     * up each key it returns, so that for a table that resizes incrementally, lookups happen in the middle of a walk in
+     * the middle of a resize.
+     */
+    private static void test27h(DictionarySupplier stSup, int n) {
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        Dictionary<Integer, Integer> st = stSup.getNew();
+        List<Integer> keys = new ArrayList<Integer>();
+        
+        for (int i = 0; i < 2 * n; i++) {
+            if (i < n) {
+                int k = r.nextInt();
+                keys.add(k);
+                assert equal(st.put(k, i), map.put(k, i));
+            } else {
+                int k = keys.get(r.nextInt(keys.size()));
+                assert equal(st.delete(k), map.remove(k));
+            }
+            
+            if (i % 2 == 0) {
+                Set<Integer> seen = new HashSet<Integer>();
+                for (Map.Entry<Integer, Integer> entry : st) {
+                    assert entry.getKey() != null && entry.getValue() != null;
+                    assert entry.getValue().equals(map.get(entry.getKey()));
+                    assert entry.getValue().equals(st.get(entry.getKey()));
+                    assert st.containsKey(entry.getKey());
+                    assert seen.add(entry.getKey());
+                }
+                assert seen.size() == map.size();
+            }
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #27, n=%d: passed%n", n);
+        }
+    }
+    
+    /**
+     * Grows and shrinks a self-organizing dictionary like {@link #test27h}, walking it while looking up the keys it
+     * returns. A lookup may reorder the dictionary, so the walk must either stop with a
+     * {@code ConcurrentModificationException} or return each key exactly once; it must never skip or repeat keys.
+     */
+    private static void test28h(DictionarySupplier stSup, int n) {
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        Dictionary<Integer, Integer> st = stSup.getNew();
+        List<Integer> keys = new ArrayList<Integer>();
+        int stopped = 0;
+        
+        for (int i = 0; i < 2 * n; i++) {
+            if (i < n) {
+                int k = r.nextInt(4 * n);
+                keys.add(k);
+                assert equal(st.put(k, i), map.put(k, i));
+            } else {
+                int k = keys.get(r.nextInt(keys.size()));
+                assert equal(st.delete(k), map.remove(k));
+            }
+            
+            if (i % 2 == 0) {
+                Set<Integer> seen = new HashSet<Integer>();
+                try {
+                    for (Map.Entry<Integer, Integer> entry : st) {
+                        assert entry.getValue().equals(map.get(entry.getKey()));
+                        assert seen.add(entry.getKey());
+                        int k = keys.get(r.nextInt(keys.size()));
+                        assert equal(st.get(k), map.get(k));
+                        k = keys.get(r.nextInt(keys.size()));
+                        assert st.containsKey(k) == map.containsKey(k);
+                    }
+                    assert seen.size() == map.size();
+                } catch (ConcurrentModificationException e) {
+                    stopped++;
+                }
+                assert sameEntries(st, map);
+            }
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #28, n=%d: passed (%d walks stopped)%n", n, stopped);
+        }
+    }
+    
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+    
+    /**
+     * Returns whether iterating over {@code st} gives exactly the mappings in {@code map}, and {@code getAllKeys} its
+     * keys.
+     */
+    private static <K extends Comparable<K>, V> boolean sameEntries(Dictionary<K, V> st, Map<K, V> map) {
+        int count = 0;
+        for (Map.Entry<K, V> entry : st) {
+            if (!entry.getValue().equals(map.get(entry.getKey())))
+                return false;
+            count++;
+        }
+        return count == map.size() && st.getAllKeys().equals(map.keySet());
+    }
+    
+    /**
+     * Fills a file-backed {@link OffHeapHashtable}, then opens the file again and checks that the second table has
+     * the same contents, and that it keeps working afterwards.
+     * 
+     * @param n number of operations on each table
+     */
+    private static void test11h(int n) {
+        Map<Long, Integer> map = new HashMap<Long, Integer>();
+        File file = null;
+        try {
+            file = File.createTempFile("dictionary", ".oht");
+            OffHeapHashtable<Long, Integer> st = new OffHeapHashtable<Long, Integer>(OffHeapHashtable.Codec.LONG,
+                    OffHeapHashtable.Codec.INTEGER, file);
+            
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < n; i++) {
+                    long k = (long) (r.nextDouble() * n) << 40;
+                    if (r.nextDouble() < 0.7) {
+                        int v = r.nextInt();
+                        Integer x = map.put(k, v);
+                        Integer y = st.put(k, v);
+                        assert x == null ? y == null : x.equals(y);
+                    } else {
+                        Integer x = map.remove(k);
+                        Integer y = st.delete(k);
+                        assert x == null ? y == null : x.equals(y);
+                    }
+                }
+                st.flush();
+                
+                st = new OffHeapHashtable<Long, Integer>(OffHeapHashtable.Codec.LONG, OffHeapHashtable.Codec.INTEGER,
+                        file);
+                assert st.size() == map.size();
+                assert st.getAllKeys().equals(map.keySet());
+                for (long k : map.keySet()) {
+                    assert st.get(k).equals(map.get(k));
+                }
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            if (file != null)
+                file.delete();
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #11, n=%d: passed%n", n);
+        }
+    }
+    
+    private static void test6h(DictionarySupplier stSup, int n) {
+        final int MAX = 2 * n;
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        Dictionary<Integer, Integer> st = stSup.getNew();
+        
+        for (int i = 0; i < n; i++) {
+            int c = (int) (r.nextDouble() * 7);
+            
+            if (c == 0) { // Get
+                int k = (int) (r.nextDouble() * MAX);
+                Integer x = map.get(k);
+                Integer y = st.get(k);
+                if (x == null) {
+                    assert y == null;
+                } else {
+                    assert x.equals(y);
+                }
+            } else if (c == 1) { // put
+                int k = (int) (r.nextDouble() * MAX);
+                int v = (int) (r.nextDouble() * MAX);
+                Integer x = map.put(k, v);
+                
+                Integer y = st.put(k, v);
+                if (x == null) {
+                    assert y == null;
+                } else {
+                    assert x.equals(y);
+                }
+            } else if (c == 2) { // size, isEmpty
+                assert map.size() == st.size();
+                assert map.isEmpty() == st.isEmpty();
+            } else if (c == 3) {
+                int k = (int) (r.nextDouble() * MAX);
+                boolean x = map.containsKey(k);
+                boolean y = st.containsKey(k);
+                assert x == y;
+            } else if (c == 4) {
+                int v = (int) (r.nextDouble() * MAX);
+                boolean x = map.containsValue(v);
+                boolean y = st.containsValue(v);
+                assert x == y;
+            } else if (c == 5) {
+                Set<Integer> x = map.keySet();
+                Set<Integer> y = st.getAllKeys();
+                assert x.equals(y);
+                
+                Map<Integer, Integer> entries = new HashMap<Integer, Integer>();
+                for (Map.Entry<Integer, Integer> entry : st) {
+                    assert entries.put(entry.getKey(), entry.getValue()) == null;
+                }
+                assert map.equals(entries);
+            } else if (c == 6) { // delete
+                int k = (int) (r.nextDouble() * MAX);
+                Integer x = map.remove(k);
+                Integer y = st.delete(k);
+                if (x == null) {
+                    assert y == null;
+                } else {
+                    assert x.equals(y);
+                }
+            } else {
+                System.out.println("? " + c);
+            }
+        }
+        
+        if (VERBOSE) {
+            System.out.printf("Test #6, n=%d: passed%n", n);
+        }
+    }
+    
+    private static void test7(int REP, double... amounts) {
+        int PRINTS;
+        if (VERBOSE) {
+            PRINTS = 100;
+        } else {
+            PRINTS = 5;
+        }
+        
+        double[] limits = getLimits(amounts);
+        int n = 10000;
+        
+        System.out.printf("Test 7 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { new LinkedListSupplier(), new RedBlackTreeSupplier(),
+                new BPlusTreeSupplier(), new ProbingHashtableSupplier(0.55, 0.45),
+                new ProbingHashtableSupplier(0.60, 0.40), new ProbingHashtableSupplier(0.65, 0.38),
+                new ProbingHashtableSupplier(0.70, 0.36), new ProbingHashtableSupplier(0.80, 0.30),
+                new ProbingHashtableSupplier(0.90, 0.27), new ProbingHashtableSupplier(0.95, 0.15),
+                new RobinHoodHashtableSupplier(0.90, 0.27), new RobinHoodHashtableSupplier(0.95, 0.15),
+                new SwissHashtableSupplier(0.90, 0.27), new SwissHashtableSupplier(0.95, 0.15),
+                new CuckooHashtableSupplier(0.90, 0.27), new CuckooHashtableSupplier(0.95, 0.15),
+                new HopscotchHashtableSupplier(0.90, 0.27), new HopscotchHashtableSupplier(0.95, 0.15),
+                new IntHashtableSupplier(0.90, 0.27), new OffHeapHashtableSupplier(0.90, 0.27),
+                new ChainingHashtableSupplier(LLsup), new ChainingHashtableSupplier(RBTsup),
+                new ChainingHashtableSupplier(adaptiveSup), new MockSupplier() };
+        
+        int len = confs.length;
+        
+        String s1 = "";
+        String s2 = "";
+        for (DictionarySupplier conf : confs) {
+            s1 += String.format("  %-13s", conf.toString());
+            s2 += String.format("%s,", conf.toString());
+        }
+        System.out.println(s1);
+        outStream.println(s2);
+        
+        StatsList[] lists = new StatsList[len];
+        for (int i = 0; i < len; i++) {
+            lists[i] = new StatsList();
+        }
+        
+        for (int i = 1; i <= REP; i++) {
+            for (int j = 0; j < len; j++) {
+                Dictionary<Integer, Integer> st = confs[j].getNew();
+                double mean = test7h(st, n, limits);
+                outStream.printf("%.5f,", mean);
+                lists[j].add(mean);
+            }
+            
+            outStream.println();
+            
+            if (i % (REP / PRINTS + 1) == 0) {
+                for (int j = 0; j < len; j++) {
+                    StatsList l = lists[j];
+                    System.out.printf("%6.2f (%5.3g) ", l.mean(), l.stddevMean());
+                }
+                System.out.println();
+            }
+        }
+        System.out.println(s1 + "\n");
+        outStream.println(s2 + "\n");
+        
+        for (int j = 0; j < len; j++) {
+            for (int i = 0; i < 3; i++) {
+                lists[j].remove(0);
+            }
+            
+            System.out.printf("%-12s %s%n", confs[j], lists[j]);
+            outStream.printf("%-12s %s%n", confs[j], lists[j]);
+        }
+        
+        StatsList mock = lists[len - 1];
+        outStream.printf("%nSubtracting the mock (%.3f [%.5f]):%n", mock.mean(), mock.stddevMean());
+        
+        for (int j = 0; j < len - 1; j++) {
+            outStream.printf("%-12s %.3f (%.5f)%n", confs[j], lists[j].mean() - mock.mean(), lists[j].stddevMean());
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 7 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 7 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Measures the cost of {@code delete} on nearly full probing hashtables. Each table is filled with at least
+     * {@code n} keys, and then until it is within a few percent of its maximum fullness. Then, repeatedly, a tenth of
+     * the keys are deleted (timed) and put back (untimed).
+     * 
+     * @param REP number of tables to build per configuration
+     * @param n minimum number of keys in each table
+     */
+    private static void test8(int REP, int n) {
+        final int ROUNDS = 20;
+        final int BATCH = n / 10;
+        
+        System.out.printf("Test 8 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        double[][] confs = new double[][] { { 0.75, 0.25 }, { 0.80, 0.30 }, { 0.90, 0.27 }, { 0.95, 0.15 } };
+        
+        for (double[] conf : confs) {
+            DictionarySupplier sup = new ProbingHashtableSupplier(conf[0], conf[1]);
+            StatsList list = new StatsList();
+            StatsList fullness = new StatsList();
+            
+            for (int i = 0; i < REP; i++) {
+                ProbingHashtable<Integer, Integer> st = (ProbingHashtable<Integer, Integer>) sup
+                        .<Integer, Integer> getNew();
+                List<Integer> keys = new ArrayList<Integer>();
+                while (keys.size() < n || st.fullness() < 0.97 * conf[0]) {
+                    int k = r.nextInt();
+                    if (st.put(k, k) == null) {
+                        keys.add(k);
+                    }
+                }
+                fullness.add(st.fullness());
+                
+                long nanos = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    int offset = r.nextInt(keys.size() - BATCH);
+                    
+                    long start = System.nanoTime();
+                    for (int j = offset; j < offset + BATCH; j++) {
+                        st.delete(keys.get(j));
+                    }
+                    nanos += System.nanoTime() - start;
+                    
+                    for (int j = offset; j < offset + BATCH; j++) {
+                        st.put(keys.get(j), j);
+                    }
+                }
+                list.add(((double) nanos) / (ROUNDS * BATCH));
+            }
+            
+            for (int i = 0; i < 3; i++) {
+                list.remove(0);
+            }
+            
+            System.out.printf("%-12s %s at fullness %.3f%n", sup, list, fullness.mean());
+            outStream.printf("%-12s %s at fullness %.3f%n", sup, list, fullness.mean());
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 8 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 8 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Measures the latency of single lookups, hits and misses alike, in nearly full open-addressing tables. Each table
+     * is filled with at least {@code n} keys, and then until it is within a few percent of its maximum fullness, or
+     * holds {@code 4n} keys if it never gets there (a hopscotch table may resize early).
+     * 
+     * @param REP number of tables to build per configuration
+     * @param n minimum number of keys in each table
+     */
+    private static void test9(int REP, int n) {
+        System.out.printf("Test 9 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        double[][] confs = new double[][] { { 0.90, 0.27 }, { 0.95, 0.15 } };
+        
+        for (double[] conf : confs) {
+            DictionarySupplier[] sups = new DictionarySupplier[] { new ProbingHashtableSupplier(conf[0], conf[1]),
+                    new RobinHoodHashtableSupplier(conf[0], conf[1]), new CuckooHashtableSupplier(conf[0], conf[1]),
+                    new HopscotchHashtableSupplier(conf[0], conf[1]) };
+            
+            for (DictionarySupplier sup : sups) {
+                LatencyList latencies = new LatencyList();
+                
+                for (int i = 0; i < REP; i++) {
+                    Dictionary<Integer, Integer> st = sup.getNew();
+                    List<Integer> keys = new ArrayList<Integer>();
+                    while (keys.size() < n || (fullness(st) < 0.97 * conf[0] && keys.size() < 4 * n)) {
+                        int k = r.nextInt();
+                        if (st.put(k, k) == null) {
+                            keys.add(k);
+                        }
+                    }
+                    
+                    for (int j = 0; j < keys.size(); j++) {
+                        Integer k = r.nextBoolean() ? keys.get(r.nextInt(keys.size())) : r.nextInt();
+                        long start = System.nanoTime();
+                        st.get(k);
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }
+                
+                System.out.printf("%-12s %s%n", sup, latencies);
+                outStream.printf("%-12s %s%n", sup, latencies);
+            }
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 9 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 9 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Measures the latency of every single {@code put} while a table grows from empty to {@code n} keys, so that the
+     * cost of resizing shows up in the tail rather than being averaged away. Puts during which the garbage collector
+     * ran are left out, since their latency says more about the collector than about the table.
+     * 
+     * @param REP number of tables to build per configuration
+     * @param n number of keys to put in each table
+     */
+    private static void test10(int REP, int n) {
+        System.out.printf("Test 10 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { new ProbingHashtableSupplier(0.75, 0.25, 0.5),
+                new ProbingHashtableSupplier(0.75, 0.25, 0.5, true), new ChainingHashtableSupplier(LLsup),
+                new ChainingHashtableSupplier(LLsup, 7.0, 5.0, 3.0, true) };
+        
+        for (DictionarySupplier conf : confs) {
+            LatencyList latencies = new LatencyList();
+            int skipped = 0;
+            
+            for (int i = 0; i < REP; i++) {
+                Dictionary<Integer, Integer> st = conf.getNew();
+                Integer[] keys = new Integer[n];
+                for (int j = 0; j < n; j++) {
+                    keys[j] = r.nextInt();
+                }
+                
+                // Asking for the collection count is slow, so it's only done after slow puts.
+                long collections = gcCount();
+                for (int j = 0; j < n; j++) {
+                    long start = System.nanoTime();
+                    st.put(keys[j], keys[j]);
+                    long nanos = System.nanoTime() - start;
+                    if (nanos > 50000 && gcCount() != collections) {
+                        collections = gcCount();
+                        skipped++;
+                    } else {
+                        latencies.add(nanos);
+                    }
+                }
+            }
+            
+            System.out.printf("%-12s %s (%d skipped for GC)%n", conf, latencies, skipped);
+            outStream.printf("%-12s %s (%d skipped for GC)%n", conf, latencies, skipped);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 10 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 10 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Measures the mean cost of successful and of unsuccessful lookups in nearly full open-addressing tables,
+     * separately. Each table is filled with at least {@code n} keys, and then until it is within a few percent of its
+     * maximum fullness (or until it holds {@code 4n} keys); then every key is looked up once, and as many keys that
+     * aren't there.
+     * 
+     * @param REP number of tables to build per configuration
+     * @param n minimum number of keys in each table
+     */
+    private static void test12(int REP, int n) {
+        System.out.printf("Test 12 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        double[][] confs = new double[][] { { 0.875, 0.25 }, { 0.90, 0.27 }, { 0.95, 0.15 } };
+        
+        for (double[] conf : confs) {
+            DictionarySupplier[] sups = new DictionarySupplier[] { new ProbingHashtableSupplier(conf[0], conf[1]),
+                    new RobinHoodHashtableSupplier(conf[0], conf[1]), new SwissHashtableSupplier(conf[0], conf[1]),
+                    new CuckooHashtableSupplier(conf[0], conf[1]), new HopscotchHashtableSupplier(conf[0], conf[1]) };
+            
+            for (DictionarySupplier sup : sups) {
+                StatsList hits = new StatsList();
+                StatsList misses = new StatsList();
+                StatsList fullness = new StatsList();
+                
+                for (int i = 0; i < REP; i++) {
+                    Dictionary<Integer, Integer> st = sup.getNew();
+                    List<Integer> keys = new ArrayList<Integer>();
+                    while (keys.size() < n || (fullness(st) < 0.97 * conf[0] && keys.size() < 4 * n)) {
+                        int k = r.nextInt();
+                        if (st.put(k, k) == null) {
+                            keys.add(k);
+                        }
+                    }
+                    fullness.add(fullness(st));
+                    
+                    Integer[] absent = new Integer[keys.size()];
+                    for (int j = 0; j < absent.length; j++) {
+                        int k;
+                        do {
+                            k = r.nextInt();
+                        } while (st.containsKey(k));
+                        absent[j] = k;
+                    }
+                    Collections.shuffle(keys, r);
+                    
+                    long start = System.nanoTime();
+                    for (Integer k : keys) {
+                        st.get(k);
+                    }
+                    long middle = System.nanoTime();
+                    for (Integer k : absent) {
+                        st.get(k);
+                    }
+                    long end = System.nanoTime();
+                    
+                    hits.add(((double) (middle - start)) / keys.size());
+                    misses.add(((double) (end - middle)) / absent.length);
+                }
+                
+                for (int i = 0; i < 3; i++) {
+                    hits.remove(0);
+                    misses.remove(0);
+                }
+                
+                String line = String.format("%-12s hit %6.1f (%5.2f)  miss %6.1f (%5.2f) at fullness %.3f", sup,
+                        hits.mean(), hits.stddevMean(), misses.mean(), misses.stddevMean(), fullness.mean());
+                System.out.println(line);
+                outStream.println(line);
+            }
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 12 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 12 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Measures how long a chaining hashtable takes to resize, against its size. Keys are put one at a time, and a put
+     * during which the fullness drops is taken to be a resize; the puts that don't resize take well under a
+     * microsecond, so the time of a resizing put is close to the time of the resize itself.
+     * 
+     * @param REP number of tables to build per configuration
+     * @param n number of keys to put in each table
+     */
+    private static void test13(int REP, int n) {
+        System.out.printf("Test 13 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { new ChainingHashtableSupplier(LLsup),
+                new ChainingHashtableSupplier(RBTsup), new ChainingHashtableSupplier(new ProbingHashtableSupplier()) };
+        
+        for (DictionarySupplier conf : confs) {
+            List<StatsList> times = new ArrayList<StatsList>(); // One list per resize, in order
+            List<Integer> sizes = new ArrayList<Integer>();
+            
+            for (int i = 0; i < REP; i++) {
+                ChainingHashtable<Integer, Integer> st = (ChainingHashtable<Integer, Integer>) conf
+                        .<Integer, Integer> getNew();
+                int resizes = 0;
+                for (int j = 0; j < n; j++) {
+                    int k = r.nextInt();
+                    double before = st.fullness();
+                    long start = System.nanoTime();
+                    st.put(k, k);
+                    long nanos = System.nanoTime() - start;
+                    if (st.fullness() < before) {
+                        if (resizes == times.size()) {
+                            times.add(new StatsList());
+                            sizes.add(st.size());
+                        }
+                        times.get(resizes++).add(nanos);
+                    }
+                }
+            }
+            
+            for (int i = 0; i < times.size(); i++) {
+                StatsList t = times.get(i);
+                for (int j = 0; j < 3; j++) {
+                    t.remove(0);
+                }
+                String line = String.format("%-12s size %8d: %9.1f us (%7.1f), %6.1f ns/entry", conf, sizes.get(i),
+                        t.mean() / 1000, t.stddevMean() / 1000, t.mean() / sizes.get(i));
+                System.out.println(line);
+                outStream.println(line);
+            }
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 13 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 13 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Compares the chaining hashtable buckets on keys with well-spread hashes and on keys whose hashes collide. The
+     * colliding keys are strings made of a distinct prefix and a suffix of ten two-character blocks, each "Aa" or "BB",
+     * which have the same {@code hashCode}; so each prefix gives 1024 keys with one hash, which all land in one bucket.
+     * Each table gets {@code 1024 * groups} keys; every key is put and then looked up.
+     * 
+     * @param REP number of tables to build per configuration and key set
+     * @param groups number of groups of 1024 keys
+     */
+    private static void test14(int REP, int groups) {
+        final int BLOCKS = 10;
+        final int GROUP = 1 << BLOCKS;
+        
+        System.out.printf("Test 14 started; n=%d, rep=%d%n", GROUP * groups, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { new ChainingHashtableSupplier(LLsup),
+                new ChainingHashtableSupplier(RBTsup), new ChainingHashtableSupplier(adaptiveSup) };
+        
+        String[] suffixes = new String[GROUP];
+        for (int i = 0; i < GROUP; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int b = 0; b < BLOCKS; b++) {
+                sb.append((i >>> b & 1) == 0 ? "Aa" : "BB");
+            }
+            suffixes[i] = sb.toString();
+        }
+        
+        for (DictionarySupplier conf : confs) {
+            StatsList uniform = new StatsList();
+            StatsList colliding = new StatsList();
+            
+            for (int i = 0; i < REP; i++) {
+                String[] spread = new String[GROUP * groups];
+                String[] collide = new String[GROUP * groups];
+                for (int g = 0; g < groups; g++) {
+                    String prefix = r.nextInt() + "-";
+                    for (int j = 0; j < GROUP; j++) {
+                        spread[GROUP * g + j] = prefix + j;
+                        collide[GROUP * g + j] = prefix + suffixes[j];
+                    }
+                }
+                
+                uniform.add(test14h(conf, spread));
+                colliding.add(test14h(conf, collide));
+            }
+            
+            for (int i = 0; i < 3; i++) {
+                uniform.remove(0);
+                colliding.remove(0);
+            }
+            
+            String line = String.format("%-12s uniform %7.1f (%5.1f)  colliding %7.1f (%5.1f) ns/op", conf,
+                    uniform.mean(), uniform.stddevMean(), colliding.mean(), colliding.stddevMean());
+            System.out.println(line);
+            outStream.println(line);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 14 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 14 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Puts every key into a new table and then looks every key up, and returns the mean time per operation.
+     */
+    private static double test14h(DictionarySupplier conf, String[] keys) {
+        Dictionary<String, String> st = conf.getNew();
+        long start = System.nanoTime();
+        for (String k : keys) {
+            st.put(k, k);
+        }
+        for (String k : keys) {
+            if (st.get(k) != k) {
+                throw new AssertionError("Wrong value for " + k + " in " + st);
+            }
+        }
+        long end = System.nanoTime();
+        return ((double) (end - start)) / (2 * keys.length);
+    }
+    
+    /**
+     * Measures the throughput of filling a dictionary with {@code n} keys and clearing it again, over and over, as when
+     * one dictionary is reused between batches. The chaining hashtables are run both with {@code clear()}, which
+     * shrinks the table back to its initial capacity, and with {@code clear(true)}, which keeps the capacity.
+     * 
+     * @param REP number of batches per configuration
+     * @param n number of keys per batch
+     */
+    private static void test15(int REP, int n) {
+        System.out.printf("Test 15 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { RBTsup, new ChainingHashtableSupplier(LLsup),
+                new ChainingHashtableSupplier(RBTsup), new ChainingHashtableSupplier(adaptiveSup) };
+        
+        Integer[] keys = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            keys[j] = r.nextInt();
+        }
+        
+        for (DictionarySupplier conf : confs) {
+            for (boolean keep : new boolean[] { false, true }) {
+                Dictionary<Integer, Integer> st = conf.getNew();
+                if (keep && !(st instanceof ChainingHashtable)) {
+                    continue;
+                }
+                
+                StatsList times = new StatsList();
+                for (int i = 0; i < REP; i++) {
+                    long start = System.nanoTime();
+                    for (Integer k : keys) {
+                        st.put(k, k);
+                    }
+                    if (keep) {
+                        ((ChainingHashtable<Integer, Integer>) st).clear(true);
+                    } else {
+                        st.clear();
+                    }
+                    long end = System.nanoTime();
+                    times.add(((double) (end - start)) / n);
+                    
+                    assert st.isEmpty() && st.get(keys[0]) == null && !st.iterator().hasNext();
+                }
+                
+                for (int i = 0; i < 3; i++) {
+                    times.remove(0);
+                }
+                
+                String line = String.format("%-12s %-14s %6.1f (%4.1f) ns/key", conf, keep ? "clear(true)" : "clear()",
+                        times.mean(), times.stddevMean());
+                System.out.println(line);
+                outStream.println(line);
+            }
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 15 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 15 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Compares building a red-black tree out of {@code n} sorted keys with {@link RedBlackTree#fromSorted} to putting
+     * them one at a time, and merging {@code n / 100}, {@code n / 10} and {@code n} more with
+     * {@link RedBlackTree#putAllSorted} to putting those. {@code putAllSorted} puts the two smaller batches one at a
+     * time too, and merges the biggest one by rebuilding the tree.
+     * 
+     * @param REP number of trees to build
+     * @param n number of keys in each tree
+     */
+    private static void test19(int REP, int n) {
+        System.out.printf("Test 19 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        int[] batchSizes = { n / 100, n / 10, n };
+        StatsList puts = new StatsList();
+        StatsList bulk = new StatsList();
+        StatsList[] mergePuts = new StatsList[batchSizes.length];
+        StatsList[] merge = new StatsList[batchSizes.length];
+        for (int b = 0; b < batchSizes.length; b++) {
+            mergePuts[b] = new StatsList();
+            merge[b] = new StatsList();
+        }
+        
+        for (int i = 0; i < REP; i++) {
+            Integer[] keys = new Integer[n];
+            int k = 0;
+            for (int j = 0; j < n; j++) {
+                k += 1 + r.nextInt(10);
+                keys[j] = k;
+            }
+            
+            long start = System.nanoTime();
+            RedBlackTree<Integer, Integer> st = new RedBlackTree<Integer, Integer>();
+            for (Integer key : keys) {
+                st.put(key, key);
+            }
+            long middle = System.nanoTime();
+            st = RedBlackTree.fromSorted(keys, keys);
+            long end = System.nanoTime();
+            puts.add(((double) (middle - start)) / n);
+            bulk.add(((double) (end - middle)) / n);
+            
+            for (int b = 0; b < batchSizes.length; b++) {
+                TreeMap<Integer, Integer> batch = new TreeMap<Integer, Integer>();
+                while (batch.size() < batchSizes[b]) {
+                    int x = r.nextInt(k);
+                    batch.put(x, x);
+                }
+                
+                st = RedBlackTree.fromSorted(keys, keys);
+                start = System.nanoTime();
+                for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+                    st.put(entry.getKey(), entry.getValue());
+                }
+                end = System.nanoTime();
+                mergePuts[b].add(((double) (end - start)) / batch.size());
+                
+                st = RedBlackTree.fromSorted(keys, keys);
+                start = System.nanoTime();
+                st.putAllSorted(batch.entrySet().iterator());
+                end = System.nanoTime();
+                merge[b].add(((double) (end - start)) / batch.size());
+            }
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            puts.remove(0);
+            bulk.remove(0);
+            for (int b = 0; b < batchSizes.length; b++) {
+                mergePuts[b].remove(0);
+                merge[b].remove(0);
+            }
+        }
+        
+        String line = String.format("build: put %6.1f (%4.1f)  fromSorted %6.1f (%4.1f) ns/key", puts.mean(),
+                puts.stddevMean(), bulk.mean(), bulk.stddevMean());
+        System.out.println(line);
+        outStream.println(line);
+        for (int b = 0; b < batchSizes.length; b++) {
+            line = String.format("merge %6d: put %6.1f (%4.1f)  putAllSorted %6.1f (%4.1f) ns/new key", batchSizes[b],
+                    mergePuts[b].mean(), mergePuts[b].stddevMean(), merge[b].mean(), merge[b].stddevMean());
+            System.out.println(line);
+            outStream.println(line);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 19 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 19 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Compares the throughput of a {@link ConcurrentSkipList} to that of a {@link RedBlackTree} behind one lock, with
+     * 1, 2 and 4 threads splitting {@code n} operations between them: 80% gets, 10% puts and 10% deletes, on keys
+     * drawn from {@code n} of them.
+     * 
+     * @param REP number of runs for each dictionary and thread count
+     * @param n number of operations in each run
+     */
+    private static void test22(int REP, int n) {
+        System.out.printf("Test 22 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            StatsList locked = new StatsList();
+            StatsList skip = new StatsList();
+            for (int i = 0; i < REP; i++) {
+                Dictionary<Integer, Integer> rbt = new RedBlackTree<Integer, Integer>();
+                Dictionary<Integer, Integer> csl = new ConcurrentSkipList<Integer, Integer>();
+                for (int j = 0; j < n / 2; j++) {
+                    int k = r.nextInt(n);
+                    rbt.put(k, k);
+                    csl.put(k, k);
+                }
+                locked.add(runThreads(rbt, true, threads, n) / n);
+                skip.add(runThreads(csl, false, threads, n) / n);
+            }
+            
+            for (int i = 0; i < 3; i++) {
+                locked.remove(0);
+                skip.remove(0);
+            }
+            
+            String line = String.format("%d threads: RBT with a lock %6.1f (%4.1f)  CSL %6.1f (%4.1f) ns/op", threads,
+                    locked.mean(), locked.stddevMean(), skip.mean(), skip.stddevMean());
+            System.out.println(line);
+            outStream.println(line);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 22 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 22 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Splits {@code n} operations on {@code st} between {@code threads} threads, and returns how long they took, in
+     * nanoseconds. If {@code lock}, each operation is done holding {@code st}'s monitor.
+     */
+    private static double runThreads(final Dictionary<Integer, Integer> st, final boolean lock, int threads,
+            final int n) {
+        Thread[] workers = new Thread[threads];
+        final int ops = n / threads;
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(r.nextLong());
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < ops; i++) {
+                        int k = random.nextInt(n);
+                        int op = random.nextInt(10);
+                        if (lock) {
+                            synchronized (st) {
+                                apply(st, op, k);
+                            }
+                        } else {
+                            apply(st, op, k);
+                        }
+                    }
+                }
+            });
+        }
+        
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private static void apply(Dictionary<Integer, Integer> st, int op, int k) {
+        if (op == 0) {
+            st.put(k, k);
+        } else if (op == 1) {
+            st.delete(k);
+        } else {
+            st.get(k);
+        }
+    }
+    
+    /**
+     * Compares an {@link AdaptiveRadixTree} to a red-black tree and a probing hashtable, on {@code n} string keys that
+     * look like URLs: a few hundred hosts, and paths made of words from a vocabulary of a few thousand, so that keys
+     * share long prefixes, as real ones do. Measures the heap each dictionary takes up (not counting the keys, which
+     * they share), and the time to put all the keys and to look up a copy of each one.
+     * 
+     * @param REP number of dictionaries to build of each kind
+     * @param n number of keys in each dictionary
+     */
+    private static void test23(int REP, int n) {
+        System.out.printf("Test 23 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        String[] hosts = new String[300];
+        for (int i = 0; i < hosts.length; i++) {
+            hosts[i] = "http://www." + randomWord(4 + r.nextInt(8)) + (r.nextBoolean() ? ".com" : ".org");
+        }
+        String[] words = new String[3000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomWord(3 + r.nextInt(7));
+        }
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            StringBuilder key = new StringBuilder(hosts[r.nextInt(hosts.length)]);
+            for (int depth = 1 + r.nextInt(4); depth > 0; depth--) {
+                key.append('/').append(words[r.nextInt(words.length)]);
+            }
+            keys[i] = key.append('/').append(i).toString();
+        }
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { RBTsup, new ProbingHashtableSupplier(),
+                new AdaptiveRadixTreeSupplier() };
+        for (DictionarySupplier conf : confs) {
+            StatsList puts = new StatsList();
+            StatsList gets = new StatsList();
+            StatsList bytes = new StatsList();
+            
+            for (int i = 0; i < REP; i++) {
+                // Lookups use copies of the keys, which haven't cached their hash codes and aren't the same objects.
+                String[] copies = new String[n];
+                for (int j = 0; j < n; j++) {
+                    copies[j] = new String(keys[j]);
+                }
+                
+                long before = usedMemory();
+                long start = System.nanoTime();
+                Dictionary<String, Integer> st = conf.getNew();
+                for (int j = 0; j < n; j++) {
+                    st.put(keys[j], j);
+                }
+                long end = System.nanoTime();
+                puts.add(((double) (end - start)) / n);
+                bytes.add(((double) (usedMemory() - before)) / n);
+                
+                start = System.nanoTime();
+                long sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += st.get(copies[j]);
+                }
+                end = System.nanoTime();
+                gets.add(((double) (end - start)) / n);
+                assert sum == (long) n * (n - 1) / 2;
+                st.clear();
+            }
+            
+            for (int i = 0; i < 3; i++) {
+                puts.remove(0);
+                gets.remove(0);
+                bytes.remove(0);
+            }
+            
+            String line = String.format("%-12s put %6.1f (%4.1f)  get %6.1f (%4.1f) ns/key  %6.1f (%4.1f) bytes/key",
+                    conf, puts.mean(), puts.stddevMean(), gets.mean(), gets.stddevMean(), bytes.mean(),
+                    bytes.stddevMean());
+            System.out.println(line);
+            outStream.println(line);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 23 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 23 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    private static String randomWord(int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + r.nextInt(26));
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Returns the number of bytes in use on the heap, after collecting as much garbage as a few full collections will.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * Measures lookups drawn from a Zipfian distribution (the key of popularity rank {@code i} is asked for in
+     * proportion to {@code 1 / i}) in linked lists of {@code m} keys and in chaining hashtables of {@code n} keys with
+     * linked-list buckets, under each {@link LinkedList.Policy}. The keys are put in an order unrelated to their
+     * popularity.
+     * 
+     * @param REP number of dictionaries to build of each kind
+     * @param m number of keys in each list
+     * @param n number of keys in each hashtable
+     */
+    private static void test24(int REP, int m, int n) {
+        System.out.printf("Test 24 started; m=%d, n=%d, rep=%d%n", m, n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        for (int size : new int[] { m, n }) {
+            for (LinkedList.Policy policy : LinkedList.Policy.values()) {
+                DictionarySupplier sup = new LinkedListSupplier(policy);
+                if (size == n) {
+                    sup = new ChainingHashtableSupplier(sup);
+                }
+                StatsList gets = new StatsList();
+                
+                for (int i = 0; i < REP; i++) {
+                    List<Integer> keys = new ArrayList<Integer>();
+                    for (int j = 0; j < size; j++) {
+                        keys.add(r.nextInt());
+                    }
+                    Dictionary<Integer, Integer> st = sup.getNew();
+                    for (Integer key : keys) {
+                        st.put(key, key);
+                    }
+                    Collections.shuffle(keys, r); // Ranks keys by popularity, in an order unrelated to the puts
+                    
+                    int lookups = 20 * size;
+                    int[] ranks = zipf(size, lookups);
+                    long start = System.nanoTime();
+                    long sum = 0;
+                    for (int j = 0; j < lookups; j++) {
+                        sum += st.get(keys.get(ranks[j]));
+                    }
+                    long end = System.nanoTime();
+                    gets.add(((double) (end - start)) / lookups);
+                    assert sum != 1; // Keeps the lookups from being optimized away
+                }
+                
+                for (int i = 0; i < 3; i++) {
+                    gets.remove(0);
+                }
+                
+                String line = String.format("%-12s %7d keys: get %7.1f (%5.1f) ns", sup, size, gets.mean(),
+                        gets.stddevMean());
+                System.out.println(line);
+                outStream.println(line);
+            }
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 24 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 24 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Returns {@code count} ranks from {@code 0} to {@code n - 1}, drawn from a Zipfian distribution with exponent 1.
+     */
+    private static int[] zipf(int n, int count) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, r.nextDouble() * total);
+            ranks[i] = rank < 0 ? -rank - 1 : rank;
+        }
+        return ranks;
+    }
+    
+    /**
+     * Compares chaining hashtables with {@link LinkedList} and with {@link UnrolledList} buckets: the time and heap
+     * allocation per put while filling a table with {@code n} keys (which includes the table's own resizing), the
+     * allocation per put that just replaces a value, the time and allocation per delete and put back of a key once the
+     * table is full (so with no resizing), and the time per successful lookup.
+     * 
+     * @param REP number of tables to build of each kind
+     * @param n number of keys in each table
+     */
+    private static void test25(int REP, int n) {
+        System.out.printf("Test 25 started; n=%d, rep=%d%n", n, REP);
+        long startMillis = System.currentTimeMillis();
+        
+        DictionarySupplier[] confs = new DictionarySupplier[] { new ChainingHashtableSupplier(LLsup),
+                new ChainingHashtableSupplier(new UnrolledListSupplier()) };
+        boolean counting = allocatedBytes() >= 0;
+        for (DictionarySupplier conf : confs) {
+            StatsList puts = new StatsList();
+            StatsList putBytes = new StatsList();
+            StatsList updateBytes = new StatsList();
+            StatsList churns = new StatsList();
+            StatsList churnBytes = new StatsList();
+            StatsList gets = new StatsList();
+            
+            for (int i = 0; i < REP; i++) {
+                Integer[] keys = new Integer[n];
+                for (int j = 0; j < n; j++) {
+                    keys[j] = r.nextInt();
+                }
+                
+                Dictionary<Integer, Integer> st = conf.getNew();
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int j = 0; j < n; j++) {
+                    st.put(keys[j], keys[j]);
+                }
+                long end = System.nanoTime();
+                puts.add(((double) (end - start)) / n);
+                putBytes.add(((double) (allocatedBytes() - bytes)) / n);
+                
+                bytes = allocatedBytes();
+                for (int j = 0; j < n; j++) {
+                    st.put(keys[j], keys[j]);
+                }
+                updateBytes.add(((double) (allocatedBytes() - bytes)) / n);
+                
+                bytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int j = 0; j < n; j++) {
+                    st.delete(keys[j]);
+                    st.put(keys[j], keys[j]);
+                }
+                end = System.nanoTime();
+                churns.add(((double) (end - start)) / n);
+                churnBytes.add(((double) (allocatedBytes() - bytes)) / n);
+                
+                start = System.nanoTime();
+                long sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += st.get(keys[j]);
+                }
+                end = System.nanoTime();
+                gets.add(((double) (end - start)) / n);
+                assert sum != 1; // Keeps the lookups from being optimized away
+            }
+            
+            for (int i = 0; i < 3; i++) {
+                puts.remove(0);
+                putBytes.remove(0);
+                updateBytes.remove(0);
+                churns.remove(0);
+                churnBytes.remove(0);
+                gets.remove(0);
+            }
+            
+            String line = String.format("%-12s put %6.1f (%4.1f) ns %s B  update %s B  "
+                    + "delete+put %6.1f (%4.1f) ns %s B  get %6.1f (%4.1f) ns", conf, puts.mean(), puts.stddevMean(),
+                    bytesColumn(counting, putBytes, 5), bytesColumn(counting, updateBytes, 4), churns.mean(),
+                    churns.stddevMean(), bytesColumn(counting, churnBytes, 4), gets.mean(), gets.stddevMean());
+            System.out.println(line);
+            outStream.println(line);
+        }
+        
+        long endMillis = System.currentTimeMillis();
+        System.out.printf("Test 25 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+        outStream.printf("Test 25 completed successfully; took %.3f seconds%n%n", (endMillis - startMillis) / 1000.0);
+    }
+    
+    /**
+     * Returns the number of bytes this thread has allocated on the heap so far, or -1 if the JVM can't tell; counting
+     * them needs HotSpot's {@code com.sun.management.ThreadMXBean} with allocation counting turned on.
+     */
+    private static long allocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean))
+                return -1;
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+                return -1;
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (NoClassDefFoundError e) {
+            return -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Formats the mean of {@code bytes} for a column {@code width} characters wide, or "n/a" if the JVM can't count
+     * allocations.
+     */
+    private static String bytesColumn(boolean counting, StatsList bytes, int width) {
+        return counting ? String.format("%" + width + ".1f", bytes.mean()) : String.format("%" + width + "s", "n/a");
+    }
+    
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+    
+    private static double fullness(Dictionary<?, ?> st) {
+        if (st instanceof ProbingHashtable)
+            return ((ProbingHashtable<?, ?>) st).fullness();
+        if (st instanceof RobinHoodHashtable)
+            return ((RobinHoodHashtable<?, ?>) st).fullness();
+        if (st instanceof SwissHashtable)
+            return ((SwissHashtable<?, ?>) st).fullness();
+        if (st instanceof CuckooHashtable)
+            return ((CuckooHashtable<?, ?>) st).fullness();
+        if (st instanceof HopscotchHashtable)
+            return ((HopscotchHashtable<?, ?>) st).fullness();
+        throw new IllegalArgumentException("Not an open-addressing table: " + st);
+    }
+    
+    private static double test7h(Dictionary<Integer, Integer> st, int n, double[] limits) {
+        final int MAX = (int) (1.5 * SIZE);
+        
+        long start = System.nanoTime();
+        
+        for (int i = 0; i < n; i++) {
+            double d = r.nextDouble();
+            int c;
+            for (c = 0; c < limits.length; c++) {
+                if (d < limits[c]) {
+                    break;
+                }
+            }
+            
+            if (c == 0) { // Get
+                if (!st.isEmpty()) {
+                    Integer rn = (int) (r.nextDouble() * MAX);
+                    st.get(rn);
+                }
+            } else if (c == 1) { // put
+                int k = (int) (r.nextDouble() * MAX);
+                int v = r.nextInt();
+                st.put(k, v);
+            } else if (c == 2) { // delete
+                Integer k = (int) (r.nextDouble() * MAX);
+                st.delete(k);
+            }
+        }
+        long end = System.nanoTime();
+        return ((double) (end - start)) / n;
+    }
+}
+
+/**
+ * Collects individual latencies, in nanoseconds, and reports their distribution.
+ */
+class LatencyList {
+    private long[] list;
+    private int size;
+    
+    /**
+     * Make a new LatencyList
+     * 
+     */
+    public LatencyList() {
+        list = new long[1024];
+        size = 0;
+    }
+    
+    /**
+     * Add the given latency to the list.
+     * 
+     * @param nanos latency to add
+     */
+    public void add(long nanos) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, 2 * size);
+        }
+        list[size++] = nanos;
+    }
+    
+    /**
+     * Returns the latency that the given fraction of entries are at or below.
+     * 
+     * @param p fraction between 0 and 1
+     * @return the latency at that percentile
+     */
+    public long percentile(double p) {
+        Arrays.sort(list, 0, size);
+        return list[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+    }
+    
+    /**
+     * Returns the mean latency.
+     * 
+     * @return mean latency
+     */
+    public double mean() {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += list[i];
+        }
+        return sum / size;
+    }
+    
+    public String toString() {
+        return String.format("mean %7.1f  p50 %6d  p99 %6d  p99.9 %7d  max %9d", mean(), percentile(0.5),
+                percentile(0.99), percentile(0.999), percentile(1.0));
     }
 }
 
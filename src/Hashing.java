@@ -0,0 +1,131 @@
+/*
+ * Hashing.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl
+ */
+
+import java.util.*;
+
+/**
+ * Hash helpers shared by the hashtables.
+ * <p>
+ * The tables keep power-of-two capacities, so a slot is picked with a bit mask or a shift rather than with {@code %}.
+ * That only works if every bit of the hash is well mixed, which {@code hashCode} doesn't promise ({@code Integer}'s
+ * hash is the value itself), so hashes go through {@link #spread(int)} first.
+ * 
+ * @author Jackson Scholl
+ */
+final class Hashing {
+    private Hashing() {}
+    
+    /**
+     * Mixes the bits of a hash code so that every output bit depends on every input bit. This is the finalizer of
+     * MurmurHash3.
+     * 
+     * @param h the hash code
+     * @return the mixed hash
+     */
+    static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+    
+    /**
+     * Mixes the bits of a 64-bit key down to a 32-bit hash, using the 64-bit finalizer of MurmurHash3.
+     * 
+     * @param h the key
+     * @return the mixed hash
+     */
+    static int spread(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+    
+    /**
+     * Picks the power-of-two capacity whose fullness is closest to {@code set} for {@code size} entries, without going
+     * over {@code max} or under {@code minCapacity}.
+     * 
+     * @param size the number of entries
+     * @param set the fullness to aim for
+     * @param max the highest allowed fullness
+     * @param minCapacity the smallest allowed capacity; must be a power of two
+     * @return the new capacity
+     */
+    static int capacityFor(int size, double set, double max, int minCapacity) {
+        double target = size / set;
+        int capacity = minCapacity;
+        while (capacity < target / Math.sqrt(2))
+            capacity <<= 1;
+        while (size > capacity * max)
+            capacity <<= 1;
+        return capacity;
+    }
+}
+
+/**
+ * Iterates over the entries of an open-addressing table kept in parallel key and value arrays, where a null key marks
+ * an empty slot. A second pair of arrays, such as the old arrays of a table in the middle of a resize, can follow the
+ * first.
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+class SlotIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private K[] keys;
+    private V[] vals;
+    private K[] moreKeys; // The arrays to go on to once keys is done, or null
+    private V[] moreVals;
+    private int next; // The next full slot of keys, or keys.length if there is none.
+    
+    public SlotIterator(K[] keys, V[] vals, K[] moreKeys, V[] moreVals) {
+        this.keys = keys;
+        this.vals = vals;
+        this.moreKeys = moreKeys;
+        this.moreVals = moreVals;
+        next = -1;
+        advance();
+    }
+    
+    public SlotIterator(K[] keys, V[] vals) {
+        this(keys, vals, null, null);
+    }
+    
+    private void advance() {
+        while (true) {
+            for (next++; next < keys.length; next++)
+                if (keys[next] != null)
+                    return;
+            if (moreKeys == null)
+                return;
+            keys = moreKeys;
+            vals = moreVals;
+            moreKeys = null;
+            moreVals = null;
+            next = -1;
+        }
+    }
+    
+    public boolean hasNext() {
+        return next < keys.length;
+    }
+    
+    public Map.Entry<K, V> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(keys[next], vals[next]);
+        advance();
+        return entry;
+    }
+    
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
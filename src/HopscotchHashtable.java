@@ -0,0 +1,440 @@
+/*
+ * HopscotchHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A hash table using hopscotch hashing, where every key is kept within a small neighbourhood of its home slot.
+ * <p>
+ * The neighbourhood of a slot is the {@code H} slots starting at it, and each slot has an {@code int} bitmap with bit
+ * {@code d} set when the slot {@code d} places after it holds a key whose home it is. A lookup only reads the slots in
+ * its home's bitmap, which are at most {@code H} consecutive slots, one or two cache lines of the key and hash arrays,
+ * however full the table is; a miss with an empty bitmap reads nothing else at all.
+ * <p>
+ * An insert probes linearly for the nearest empty slot. If that is too far from home, it hops the empty slot backwards:
+ * it finds a key between the neighbourhood start and the empty slot that may move into the empty slot without leaving
+ * its own neighbourhood, moves it, and repeats from the slot that key left. If no key can move, the table is rebuilt
+ * bigger, but only if it is more than {@code set} full and at most once per insert; otherwise the key goes into an
+ * overflow list, which lookups search when it isn't empty. Keys with equal hash codes share a home at every capacity,
+ * so past {@code H} of them the rest always end up there. A delete just empties the slot and clears its bit, then
+ * moves an overflowed key into the slot if it is in that key's neighbourhood.
+ * <p>
+ * Every change touches only the slots between a key's home and the empty slot it ends up using, which is what makes the
+ * design friendly to fine-grained locking by ranges of slots, though this class isn't synchronized.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class HopscotchHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static double DEF_MAX = 0.90;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    
+    private static final int H = 32; // Slots in a neighbourhood; one per bit of an int.
+    private static final int MIN_CAPACITY = 16; // The minimum number of slots; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    
+    // The key/value pairs are kept in parallel arrays; slot i is empty when keys[i] is null, and hashes[i] caches
+    // hash(keys[i]). hops[i] is the neighbourhood bitmap of slot i. The overflow list is kept the same way, packed at
+    // the front of its arrays.
+    private K[] keys;
+    private V[] vals;
+    private int[] hashes;
+    private int[] hops;
+    private K[] overflowKeys;
+    private V[] overflowVals;
+    private int[] overflowHashes;
+    private int overflow; // The number of entries in the overflow list.
+    private int size; // The current number of elements, including the overflow list.
+    private int capacity; // Current capacity of the array.
+    
+    private double maxFullness; // determines how full the array can get before resizing occurs
+    private double minFullness; // determines how empty the array can get before resizing occurs
+    private double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code HopscotchHashtable} with the specified {@code maximum}, {@code minimum}, and
+     * {@code set} fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public HopscotchHashtable(double maximum, double minimum, double set) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        
+        allocate(MIN_CAPACITY);
+    }
+    
+    public HopscotchHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET);
+    }
+    
+    public HopscotchHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    private int hash(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return Hashing.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or -1 if it isn't in the table.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot, or -1
+     */
+    private int getIndex(K key, int h) {
+        int mask = capacity - 1;
+        int home = h & mask;
+        for (int bits = hops[home]; bits != 0; bits &= bits - 1) {
+            int i = (home + Integer.numberOfTrailingZeros(bits)) & mask;
+            if (hashes[i] == h && key.equals(keys[i]))
+                return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the index of {@code key} in the overflow list, or -1 if it isn't there.
+     */
+    private int getOverflowIndex(K key, int h) {
+        for (int i = 0; i < overflow; i++)
+            if (overflowHashes[i] == h && key.equals(overflowKeys[i]))
+                return i;
+        return -1;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        int h = hash(key);
+        int i = getIndex(key, h);
+        if (i >= 0)
+            return vals[i];
+        if (overflow == 0)
+            return null;
+        i = getOverflowIndex(key, h);
+        return i < 0 ? null : overflowVals[i];
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        int h = hash(key);
+        return getIndex(key, h) >= 0 || (overflow != 0 && getOverflowIndex(key, h) >= 0);
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        for (int i = 0; i < capacity; i++)
+            if (keys[i] != null && value.equals(vals[i]))
+                return true;
+        for (int i = 0; i < overflow; i++)
+            if (value.equals(overflowVals[i]))
+                return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (K k : keys)
+            if (k != null)
+                set.add(k);
+        for (int i = 0; i < overflow; i++)
+            set.add(overflowKeys[i]);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new SlotIterator<K, V>(keys, vals, overflowKeys, overflowVals);
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int h = hash(key);
+        int i = getIndex(key, h);
+        if (i >= 0) {
+            V previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        if (overflow != 0) {
+            i = getOverflowIndex(key, h);
+            if (i >= 0) {
+                V previousValue = overflowVals[i];
+                overflowVals[i] = val;
+                return previousValue;
+            }
+        }
+        
+        size++;
+        insert(key, val, h, true);
+        resizeIfNeeded();
+        return null;
+    }
+    
+    /**
+     * Puts a key that is known not to be in the table within the neighbourhood of its home slot, hopping an empty slot
+     * closer if need be. If that can't be done, the table is rebuilt at twice the size first if {@code mayRebuild} is
+     * set and the table is more than {@code setFullness} full, and otherwise the key goes into the overflow list.
+     * 
+     * @param key the key
+     * @param val the value
+     * @param h {@code hash(key)}
+     * @param mayRebuild whether the table may be rebuilt; false when this insert is itself part of a rebuild
+     */
+    private void insert(K key, V val, int h, boolean mayRebuild) {
+        int mask = capacity - 1;
+        int home = h & mask;
+        int j = home;
+        while (keys[j] != null)
+            j = (j + 1) & mask;
+        
+        while (((j - home) & mask) >= H) {
+            // Find the farthest-back slot whose neighbourhood reaches j and that owns a key before j; move that key.
+            int moved = -1;
+            for (int off = H - 1; off > 0 && moved < 0; off--) {
+                int c = (j - off) & mask;
+                int bits = hops[c] & ((1 << off) - 1);
+                if (bits != 0) {
+                    int d = Integer.numberOfTrailingZeros(bits);
+                    moved = (c + d) & mask;
+                    keys[j] = keys[moved];
+                    vals[j] = vals[moved];
+                    hashes[j] = hashes[moved];
+                    hops[c] = (hops[c] | (1 << off)) & ~(1 << d);
+                }
+            }
+            if (moved < 0) {
+                // A full neighbourhood only means the table is crowded if it is fairly full; otherwise hashes collide.
+                if (mayRebuild && size > capacity * setFullness) {
+                    rebuild(2 * capacity);
+                    insert(key, val, h, false);
+                    return;
+                }
+                if (overflow == overflowKeys.length) {
+                    int length = Math.max(4, 2 * overflow);
+                    overflowKeys = Arrays.copyOf(overflowKeys, length);
+                    overflowVals = Arrays.copyOf(overflowVals, length);
+                    overflowHashes = Arrays.copyOf(overflowHashes, length);
+                }
+                overflowKeys[overflow] = key;
+                overflowVals[overflow] = val;
+                overflowHashes[overflow] = h;
+                overflow++;
+                return;
+            }
+            keys[moved] = null;
+            j = moved;
+        }
+        
+        keys[j] = key;
+        vals[j] = val;
+        hashes[j] = h;
+        hops[home] |= 1 << ((j - home) & mask);
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        int h = hash(key);
+        int i = getIndex(key, h);
+        V value;
+        if (i >= 0) {
+            value = vals[i];
+            int mask = capacity - 1;
+            int home = h & mask;
+            hops[home] &= ~(1 << ((i - home) & mask));
+            keys[i] = null;
+            vals[i] = null;
+            
+            // The slot may be in the neighbourhood of an overflowed key.
+            for (int o = 0; o < overflow; o++) {
+                int oHome = overflowHashes[o] & mask;
+                if (((i - oHome) & mask) < H) {
+                    keys[i] = overflowKeys[o];
+                    vals[i] = overflowVals[o];
+                    hashes[i] = overflowHashes[o];
+                    hops[oHome] |= 1 << ((i - oHome) & mask);
+                    removeOverflow(o);
+                    break;
+                }
+            }
+        } else {
+            if (overflow == 0)
+                return null;
+            i = getOverflowIndex(key, h);
+            if (i < 0)
+                return null;
+            value = overflowVals[i];
+            removeOverflow(i);
+        }
+        size--;
+        
+        resizeIfNeeded();
+        return value;
+    }
+    
+    /**
+     * Removes entry {@code i} of the overflow list, moving the last entry into its place.
+     */
+    private void removeOverflow(int i) {
+        overflow--;
+        overflowKeys[i] = overflowKeys[overflow];
+        overflowVals[i] = overflowVals[overflow];
+        overflowHashes[i] = overflowHashes[overflow];
+        overflowKeys[overflow] = null;
+        overflowVals[overflow] = null;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        Arrays.fill(hops, 0);
+        allocateOverflow();
+        size = 0;
+        resizeIfNeeded();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int newCapacity) {
+        keys = (K[]) new Comparable[newCapacity];
+        vals = (V[]) new Object[newCapacity];
+        hashes = new int[newCapacity];
+        hops = new int[newCapacity];
+        allocateOverflow();
+        capacity = newCapacity;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocateOverflow() {
+        overflowKeys = (K[]) new Comparable[0];
+        overflowVals = (V[]) new Object[0];
+        overflowHashes = new int[0];
+        overflow = 0;
+    }
+    
+    /**
+     * Resizes the array and copies over the elements if the size is out of bounds.
+     * 
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity != capacity)
+            rebuild(newCapacity);
+    }
+    
+    /**
+     * Moves every entry into a new array of {@code newCapacity} slots and an empty overflow list. An entry that can't
+     * be placed goes into the overflow list; the array doesn't grow again.
+     */
+    private void rebuild(int newCapacity) {
+        K[] oldKeys = keys;
+        V[] oldVals = vals;
+        int[] oldHashes = hashes;
+        K[] oldOverflowKeys = overflowKeys;
+        V[] oldOverflowVals = overflowVals;
+        int[] oldOverflowHashes = overflowHashes;
+        int oldOverflow = overflow;
+        
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++)
+            if (oldKeys[j] != null)
+                insert(oldKeys[j], oldVals[j], oldHashes[j], false);
+        for (int j = 0; j < oldOverflow; j++)
+            insert(oldOverflowKeys[j], oldOverflowVals[j], oldOverflowHashes[j], false);
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return String.format("Hopscotch Hashtable");
+        else if (setFullness == DEF_SET)
+            return String.format("Hopscotch Hashtable (%.2f, %.2f)", maxFullness, minFullness);
+        else
+            return String.format("Hopscotch Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+class HopscotchHashtableSupplier implements DictionarySupplier {
+    private double max;
+    private double min;
+    private double set;
+    
+    /**
+     * Constructs empty {@code HopscotchHashtable}'s with the specified {@code maximum}, {@code minimum}, and
+     * {@code set} fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param setFullness the fullness when the arrays are resized
+     * 
+     * @see HopscotchHashtable
+     */
+    public HopscotchHashtableSupplier(double maximum, double minimum, double setFullness) {
+        max = maximum;
+        min = minimum;
+        set = setFullness;
+    }
+    
+    public HopscotchHashtableSupplier(double maximum, double minimum) {
+        this(maximum, minimum, HopscotchHashtable.DEF_SET);
+    }
+    
+    public HopscotchHashtableSupplier() {
+        this(HopscotchHashtable.DEF_MAX, HopscotchHashtable.DEF_MIN);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new HopscotchHashtable<K, V>(max, min, set);
+    }
+    
+    public String toString() {
+        if (max == HopscotchHashtable.DEF_MAX && min == HopscotchHashtable.DEF_MIN && set == HopscotchHashtable.DEF_SET)
+            return "Hop";
+        else if (set == 0.5)
+            return String.format("Hop(%d/%d)", (int) (max * 100), (int) (min * 100));
+        else
+            return String.format("Hop(%d/%d/%d)", (int) (max * 100), (int) (min * 100), (int) (set * 100));
+    }
+}
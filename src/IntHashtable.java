@@ -0,0 +1,409 @@
+/*
+ * IntHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A linear-probing hash table from {@code int} keys to {@code int} values.
+ * <p>
+ * Keys and values live in two {@code int} arrays, so no {@code Integer} or entry objects are created. A slot is empty
+ * when its key is {@code FREE} (zero); the zero key itself, if present, is kept off to the side. The primitive methods
+ * ({@link #get(int)}, {@link #put(int, int)}, {@link #delete(int)}, {@link #containsKey(int)}) allocate nothing; they
+ * report a missing key by returning the table's no-value, which can be told apart from a real value with
+ * {@code containsKey}. The {@code Dictionary} methods box their results as usual.
+ * 
+ * @author Jackson Scholl
+ */
+public class IntHashtable implements Dictionary<Integer, Integer> {
+    final static double DEF_MAX = 0.75;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    final static int DEF_NO_VALUE = 0;
+    
+    private static final int MIN_CAPACITY = 16; // The minimum size of the array; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    private static final int FREE = 0; // The key that marks an empty slot.
+    
+    private int[] keys;
+    private int[] vals;
+    private boolean hasFreeKey; // Whether the key FREE is in the table; its value is kept in freeValue.
+    private int freeValue;
+    private int size; // The current number of elements, including the FREE key.
+    private int capacity; // Current capacity of the arrays.
+    
+    private final int noValue; // Returned by the primitive methods when a key isn't found.
+    
+    private final double maxFullness; // determines how full the array can get before resizing occurs
+    private final double minFullness; // determines how empty the array can get before resizing occurs
+    private final double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code IntHashtable} with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @param noValue the value the primitive methods return for missing keys
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public IntHashtable(double maximum, double minimum, double set, int noValue) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        this.noValue = noValue;
+        
+        capacity = MIN_CAPACITY;
+        keys = new int[capacity];
+        vals = new int[capacity];
+    }
+    
+    public IntHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET, DEF_NO_VALUE);
+    }
+    
+    public IntHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns the value the primitive methods return when a key isn't found.
+     * 
+     * @return the no-value
+     */
+    public int getNoValue() {
+        return noValue;
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or the empty slot where it would go. {@code key} must not be {@code FREE}.
+     * 
+     * @param key the key to look for
+     * @return the index of the slot
+     */
+    private int getIndex(int key) {
+        int mask = capacity - 1;
+        int i = Hashing.spread(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    /**
+     * Returns the value mapped to {@code key}, or the no-value if there is none.
+     * 
+     * @param key the key to locate
+     * @return the value, or the no-value
+     */
+    public int get(int key) {
+        if (key == FREE)
+            return hasFreeKey ? freeValue : noValue;
+        int i = getIndex(key);
+        return keys[i] == FREE ? noValue : vals[i];
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for {@code key}.
+     * 
+     * @param key the key to locate
+     * @return whether {@code key} is mapped
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE)
+            return hasFreeKey;
+        return keys[getIndex(key)] != FREE;
+    }
+    
+    /**
+     * Maps {@code key} to {@code val}.
+     * 
+     * @param key the key
+     * @param val the value
+     * @return the previous value, or the no-value if there was none
+     */
+    public int put(int key, int val) {
+        if (key == FREE) {
+            int previousValue = hasFreeKey ? freeValue : noValue;
+            if (!hasFreeKey)
+                size++;
+            hasFreeKey = true;
+            freeValue = val;
+            return previousValue;
+        }
+        
+        int i = getIndex(key);
+        if (keys[i] != FREE) {
+            int previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        
+        insert(i, key, val);
+        return noValue;
+    }
+    
+    /**
+     * Puts a new mapping into the empty slot {@code i}, which {@link #getIndex} returned for {@code key}.
+     */
+    private void insert(int i, int key, int val) {
+        keys[i] = key;
+        vals[i] = val;
+        size++;
+        resizeIfNeeded();
+    }
+    
+    /**
+     * Removes the mapping for {@code key}; see {@link #removeSlot}.
+     * 
+     * @param key the key
+     * @return the removed value, or the no-value if there was none
+     */
+    public int delete(int key) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return noValue;
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        
+        int i = getIndex(key);
+        if (keys[i] == FREE)
+            return noValue;
+        int value = vals[i];
+        removeSlot(i);
+        return value;
+    }
+    
+    /**
+     * Empties the full slot {@code i} using backward-shift deletion, as in {@link ProbingHashtable}.
+     */
+    private void removeSlot(int i) {
+        int mask = capacity - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE)
+                break;
+            int home = Hashing.spread(keys[j]) & mask;
+            // The entry at j can fill the hole at i unless its home lies cyclically in (i, j].
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = keys[j];
+                vals[i] = vals[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        
+        resizeIfNeeded();
+    }
+    
+    public Integer get(Integer key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        int k = key;
+        if (k == FREE)
+            return hasFreeKey ? freeValue : null;
+        int i = getIndex(k);
+        return keys[i] == FREE ? null : vals[i];
+    }
+    
+    public boolean containsKey(Integer key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return containsKey(key.intValue());
+    }
+    
+    public boolean containsValue(Integer value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        int v = value;
+        if (hasFreeKey && freeValue == v)
+            return true;
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] != FREE && vals[i] == v)
+                return true;
+        }
+        return false;
+    }
+    
+    public Set<Integer> getAllKeys() {
+        Set<Integer> set = new HashSet<Integer>(size);
+        if (hasFreeKey)
+            set.add(FREE);
+        for (int k : keys)
+            if (k != FREE)
+                set.add(k);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<Integer, Integer>> iterator() {
+        return new Iterator<Map.Entry<Integer, Integer>>() {
+            private int next = hasFreeKey ? -1 : advance(-1); // The next full slot, -1 for the FREE key, or capacity
+            
+            private int advance(int i) {
+                for (i++; i < capacity; i++)
+                    if (keys[i] != FREE)
+                        break;
+                return i;
+            }
+            
+            public boolean hasNext() {
+                return next < capacity;
+            }
+            
+            public Map.Entry<Integer, Integer> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Map.Entry<Integer, Integer> entry;
+                if (next < 0)
+                    entry = new AbstractMap.SimpleImmutableEntry<Integer, Integer>(FREE, freeValue);
+                else
+                    entry = new AbstractMap.SimpleImmutableEntry<Integer, Integer>(keys[next], vals[next]);
+                next = advance(next);
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    public Integer put(Integer key, Integer val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        int k = key;
+        if (k == FREE) {
+            boolean present = hasFreeKey;
+            int previousValue = put(k, val.intValue());
+            return present ? previousValue : null;
+        }
+        
+        int i = getIndex(k);
+        if (keys[i] != FREE) {
+            int previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        insert(i, k, val);
+        return null;
+    }
+    
+    public Integer delete(Integer key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        int k = key;
+        if (k == FREE) {
+            boolean present = hasFreeKey;
+            int previousValue = delete(k);
+            return present ? previousValue : null;
+        }
+        
+        int i = getIndex(k);
+        if (keys[i] == FREE)
+            return null;
+        int value = vals[i];
+        removeSlot(i);
+        return value;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasFreeKey = false;
+        size = 0;
+        resizeIfNeeded();
+    }
+    
+    /**
+     * Resizes the arrays and copies over the elements if the size is out of bounds.
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity == capacity)
+            return;
+        int mask = newCapacity - 1;
+        
+        int[] newKeys = new int[newCapacity];
+        int[] newVals = new int[newCapacity];
+        for (int j = 0; j < capacity; j++) {
+            if (keys[j] == FREE)
+                continue;
+            int i = Hashing.spread(keys[j]) & mask;
+            while (newKeys[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            newKeys[i] = keys[j];
+            newVals[i] = vals[j];
+        }
+        keys = newKeys;
+        vals = newVals;
+        capacity = newCapacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return "Int Hashtable";
+        else
+            return String.format("Int Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+/**
+ * Makes {@link IntHashtable}s. They only hold {@code Integer} keys and values, so this supplier must only be asked for
+ * a {@code Dictionary<Integer, Integer>}.
+ */
+class IntHashtableSupplier implements DictionarySupplier {
+    private final double max;
+    private final double min;
+    
+    public IntHashtableSupplier(double maximum, double minimum) {
+        max = maximum;
+        min = minimum;
+    }
+    
+    public IntHashtableSupplier() {
+        this(IntHashtable.DEF_MAX, IntHashtable.DEF_MIN);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return (Dictionary<K, V>) (Dictionary<?, ?>) new IntHashtable(max, min);
+    }
+    
+    public String toString() {
+        if (max == IntHashtable.DEF_MAX && min == IntHashtable.DEF_MIN)
+            return "IntHT";
+        else
+            return String.format("IntHT(%d/%d)", (int) (max * 100), (int) (min * 100));
+    }
+}
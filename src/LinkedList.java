@@ -1,8 +1,16 @@
+import java.util.AbstractMap;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * A linked list implementation.
+ * <p>
+ * The list can reorganize itself as it's used, so that the keys that are asked for most drift toward the head, where
+ * they're found soonest; see {@link Policy}. That pays off when a few keys get most of the lookups, as they often do.
  * 
  * @version 2013-03-19
  * @author Jackson Scholl
@@ -11,14 +19,49 @@ import java.util.Set;
  * @param <V> The value type
  */
 public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    /**
+     * What the list does with a key that has just been found by {@code get}, {@code containsKey} or a {@code put} that
+     * replaces its value.
+     * <p>
+     * Under any policy but {@link #NONE}, a lookup can change the order of the list, and so it counts as a change to
+     * the list: an iterator in use at the time throws a {@link ConcurrentModificationException} on its next call to
+     * {@code next}.
+     */
+    public enum Policy {
+        /** Leave the list in the order the keys were put in. */
+        NONE,
+        /**
+         * Move the key to the head, and put new keys at the head too. The list adapts quickly, but one lookup of a cold
+         * key pushes every hot key back a place.
+         */
+        MOVE_TO_FRONT,
+        /**
+         * Swap the key with the one in front of it. The list adapts slowly, but stays put under occasional lookups of
+         * cold keys.
+         */
+        TRANSPOSE
+    }
+    
+    private final Policy policy;
     private Node head;
     private int size;
+    private int modCount; // Counts changes to the order of the nodes, so that iterators can tell they've gone stale.
     
     /**
-     * Makes a new linked list.
+     * Makes a new linked list that keeps its keys in the order they were put in.
      * 
      */
     public LinkedList() {
+        this(Policy.NONE);
+    }
+    
+    /**
+     * Makes a new linked list that reorganizes itself by the given policy.
+     * 
+     * @param policy what to do with keys that are found
+     */
+    public LinkedList(Policy policy) {
+        this.policy = policy;
         head = null;
         size = 0;
     }
@@ -35,13 +78,52 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
+        Node n = find(key);
+        return n == null ? null : n.val;
+    }
+    
+    /**
+     * Returns the node holding {@code key}, after reorganizing the list by the policy, or {@code null} if there is
+     * none.
+     */
+    private Node find(K key) {
+        Node prev = null;
         Node n = head;
-        while (n != null) {
-            if (n.key.equals(key))
-                return n.val;
+        while (n != null && !n.key.equals(key)) {
+            prev = n;
             n = n.next;
         }
-        return null;
+        return n == null ? null : found(prev, n);
+    }
+    
+    /**
+     * Reorganizes the list by the policy, now that {@code n}, which comes after {@code prev}, has been found.
+     * 
+     * @return the node that holds {@code n}'s key and value now
+     */
+    private Node found(Node prev, Node n) {
+        if (prev == null || policy == Policy.NONE)
+            return n;
+        
+        modCount++;
+        switch (policy) {
+        case MOVE_TO_FRONT:
+            prev.next = n.next;
+            n.next = head;
+            head = n;
+            return n;
+        case TRANSPOSE:
+            // Swapping the contents is the same as swapping the nodes, and needs no pointer to the node before prev.
+            K k = prev.key;
+            V v = prev.val;
+            prev.key = n.key;
+            prev.val = n.val;
+            n.key = k;
+            n.val = v;
+            return prev;
+        default:
+            return n;
+        }
     }
     
     public boolean containsKey(K key) throws NullPointerException {
@@ -72,34 +154,66 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
         return keys;
     }
     
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            private Node n = head;
+            private final int expectedModCount = modCount;
+            
+            public boolean hasNext() {
+                return n != null;
+            }
+            
+            public Map.Entry<K, V> next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (n == null)
+                    throw new NoSuchElementException();
+                Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(n.key, n.val);
+                n = n.next;
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
     public V put(K key, V val) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         if (val == null)
             throw new NullPointerException("Value is not allowed to be null");
         
-        Node toPut = new Node(key, val);
         if (head == null) {
-            head = toPut;
+            head = new Node(key, val);
             size++;
+            modCount++;
             return null;
         }
         
+        Node prev = null;
         Node n = head;
-        while (true) {
+        while (n != null) {
             if (n.key.equals(key)) {
+                n = found(prev, n);
                 V previousValue = n.val;
                 n.val = val;
                 return previousValue;
             }
-            if (n.next != null)
-                n = n.next;
-            else
-                break;
+            prev = n;
+            n = n.next;
+        }
+        // prev is now last node. The new node is only made now, so that replacing a value allocates nothing.
+        Node toPut = new Node(key, val);
+        if (policy == Policy.MOVE_TO_FRONT) {
+            toPut.next = head;
+            head = toPut;
+        } else {
+            prev.next = toPut;
         }
-        // n is now last node.
-        n.next = toPut;
         size++;
+        modCount++;
         return null;
     }
     
@@ -107,10 +221,14 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
+        if (head == null)
+            return null;
+        
         if (key.equals(head.key)) {
             V value = head.val;
             head = head.next;
             size--;
+            modCount++;
             return value;
         }
         
@@ -124,6 +242,7 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
             V value = n.next.val;
             n.next = n.next.next;
             size--;
+            modCount++;
             return value;
         }
         
@@ -131,12 +250,20 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
     }
     
     public void clear() {
-        for (K key : getAllKeys())
-            delete(key);
+        head = null;
+        size = 0;
+        modCount++;
     }
     
     public String toString() {
-        return String.format("Linked List", size);
+        switch (policy) {
+        case MOVE_TO_FRONT:
+            return "Linked List (move-to-front)";
+        case TRANSPOSE:
+            return "Linked List (transpose)";
+        default:
+            return "Linked List";
+        }
     }
     
     class Node {
@@ -152,13 +279,28 @@ public class LinkedList<K extends Comparable<K>, V> implements Dictionary<K, V>
 }
 
 class LinkedListSupplier implements DictionarySupplier {
-    public LinkedListSupplier() {}
+    private final LinkedList.Policy policy;
+    
+    public LinkedListSupplier(LinkedList.Policy policy) {
+        this.policy = policy;
+    }
+    
+    public LinkedListSupplier() {
+        this(LinkedList.Policy.NONE);
+    }
     
     public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
-        return new LinkedList<K, V>();
+        return new LinkedList<K, V>(policy);
     }
     
     public String toString() {
-        return "LL";
+        switch (policy) {
+        case MOVE_TO_FRONT:
+            return "LL(MTF)";
+        case TRANSPOSE:
+            return "LL(T)";
+        default:
+            return "LL";
+        }
     }
 }
@@ -0,0 +1,409 @@
+/*
+ * LongHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A linear-probing hash table from {@code long} keys to {@code long} values.
+ * <p>
+ * Keys and values live in two {@code long} arrays, so no {@code Long} or entry objects are created. A slot is empty
+ * when its key is {@code FREE} (zero); the zero key itself, if present, is kept off to the side. The primitive methods
+ * ({@link #get(long)}, {@link #put(long, long)}, {@link #delete(long)}, {@link #containsKey(long)}) allocate nothing;
+ * they report a missing key by returning the table's no-value, which can be told apart from a real value with
+ * {@code containsKey}. The {@code Dictionary} methods box their results as usual.
+ * 
+ * @author Jackson Scholl
+ */
+public class LongHashtable implements Dictionary<Long, Long> {
+    final static double DEF_MAX = 0.75;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    final static long DEF_NO_VALUE = 0;
+    
+    private static final int MIN_CAPACITY = 16; // The minimum size of the array; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    private static final long FREE = 0; // The key that marks an empty slot.
+    
+    private long[] keys;
+    private long[] vals;
+    private boolean hasFreeKey; // Whether the key FREE is in the table; its value is kept in freeValue.
+    private long freeValue;
+    private int size; // The current number of elements, including the FREE key.
+    private int capacity; // Current capacity of the arrays.
+    
+    private final long noValue; // Returned by the primitive methods when a key isn't found.
+    
+    private final double maxFullness; // determines how full the array can get before resizing occurs
+    private final double minFullness; // determines how empty the array can get before resizing occurs
+    private final double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code LongHashtable} with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @param noValue the value the primitive methods return for missing keys
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public LongHashtable(double maximum, double minimum, double set, long noValue) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        this.noValue = noValue;
+        
+        capacity = MIN_CAPACITY;
+        keys = new long[capacity];
+        vals = new long[capacity];
+    }
+    
+    public LongHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET, DEF_NO_VALUE);
+    }
+    
+    public LongHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns the value the primitive methods return when a key isn't found.
+     * 
+     * @return the no-value
+     */
+    public long getNoValue() {
+        return noValue;
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or the empty slot where it would go. {@code key} must not be {@code FREE}.
+     * 
+     * @param key the key to look for
+     * @return the index of the slot
+     */
+    private int getIndex(long key) {
+        int mask = capacity - 1;
+        int i = Hashing.spread(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    /**
+     * Returns the value mapped to {@code key}, or the no-value if there is none.
+     * 
+     * @param key the key to locate
+     * @return the value, or the no-value
+     */
+    public long get(long key) {
+        if (key == FREE)
+            return hasFreeKey ? freeValue : noValue;
+        int i = getIndex(key);
+        return keys[i] == FREE ? noValue : vals[i];
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for {@code key}.
+     * 
+     * @param key the key to locate
+     * @return whether {@code key} is mapped
+     */
+    public boolean containsKey(long key) {
+        if (key == FREE)
+            return hasFreeKey;
+        return keys[getIndex(key)] != FREE;
+    }
+    
+    /**
+     * Maps {@code key} to {@code val}.
+     * 
+     * @param key the key
+     * @param val the value
+     * @return the previous value, or the no-value if there was none
+     */
+    public long put(long key, long val) {
+        if (key == FREE) {
+            long previousValue = hasFreeKey ? freeValue : noValue;
+            if (!hasFreeKey)
+                size++;
+            hasFreeKey = true;
+            freeValue = val;
+            return previousValue;
+        }
+        
+        int i = getIndex(key);
+        if (keys[i] != FREE) {
+            long previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        
+        insert(i, key, val);
+        return noValue;
+    }
+    
+    /**
+     * Puts a new mapping into the empty slot {@code i}, which {@link #getIndex} returned for {@code key}.
+     */
+    private void insert(int i, long key, long val) {
+        keys[i] = key;
+        vals[i] = val;
+        size++;
+        resizeIfNeeded();
+    }
+    
+    /**
+     * Removes the mapping for {@code key}; see {@link #removeSlot}.
+     * 
+     * @param key the key
+     * @return the removed value, or the no-value if there was none
+     */
+    public long delete(long key) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return noValue;
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        
+        int i = getIndex(key);
+        if (keys[i] == FREE)
+            return noValue;
+        long value = vals[i];
+        removeSlot(i);
+        return value;
+    }
+    
+    /**
+     * Empties the full slot {@code i} using backward-shift deletion, as in {@link ProbingHashtable}.
+     */
+    private void removeSlot(int i) {
+        int mask = capacity - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE)
+                break;
+            int home = Hashing.spread(keys[j]) & mask;
+            // The entry at j can fill the hole at i unless its home lies cyclically in (i, j].
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = keys[j];
+                vals[i] = vals[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        
+        resizeIfNeeded();
+    }
+    
+    public Long get(Long key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        long k = key;
+        if (k == FREE)
+            return hasFreeKey ? freeValue : null;
+        int i = getIndex(k);
+        return keys[i] == FREE ? null : vals[i];
+    }
+    
+    public boolean containsKey(Long key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return containsKey(key.longValue());
+    }
+    
+    public boolean containsValue(Long value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        long v = value;
+        if (hasFreeKey && freeValue == v)
+            return true;
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] != FREE && vals[i] == v)
+                return true;
+        }
+        return false;
+    }
+    
+    public Set<Long> getAllKeys() {
+        Set<Long> set = new HashSet<Long>(size);
+        if (hasFreeKey)
+            set.add(FREE);
+        for (long k : keys)
+            if (k != FREE)
+                set.add(k);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<Long, Long>> iterator() {
+        return new Iterator<Map.Entry<Long, Long>>() {
+            private int next = hasFreeKey ? -1 : advance(-1); // The next full slot, -1 for the FREE key, or capacity
+            
+            private int advance(int i) {
+                for (i++; i < capacity; i++)
+                    if (keys[i] != FREE)
+                        break;
+                return i;
+            }
+            
+            public boolean hasNext() {
+                return next < capacity;
+            }
+            
+            public Map.Entry<Long, Long> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Map.Entry<Long, Long> entry;
+                if (next < 0)
+                    entry = new AbstractMap.SimpleImmutableEntry<Long, Long>(FREE, freeValue);
+                else
+                    entry = new AbstractMap.SimpleImmutableEntry<Long, Long>(keys[next], vals[next]);
+                next = advance(next);
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    public Long put(Long key, Long val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        long k = key;
+        if (k == FREE) {
+            boolean present = hasFreeKey;
+            long previousValue = put(k, val.longValue());
+            return present ? previousValue : null;
+        }
+        
+        int i = getIndex(k);
+        if (keys[i] != FREE) {
+            long previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        insert(i, k, val);
+        return null;
+    }
+    
+    public Long delete(Long key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        long k = key;
+        if (k == FREE) {
+            boolean present = hasFreeKey;
+            long previousValue = delete(k);
+            return present ? previousValue : null;
+        }
+        
+        int i = getIndex(k);
+        if (keys[i] == FREE)
+            return null;
+        long value = vals[i];
+        removeSlot(i);
+        return value;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasFreeKey = false;
+        size = 0;
+        resizeIfNeeded();
+    }
+    
+    /**
+     * Resizes the arrays and copies over the elements if the size is out of bounds.
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity == capacity)
+            return;
+        int mask = newCapacity - 1;
+        
+        long[] newKeys = new long[newCapacity];
+        long[] newVals = new long[newCapacity];
+        for (int j = 0; j < capacity; j++) {
+            if (keys[j] == FREE)
+                continue;
+            int i = Hashing.spread(keys[j]) & mask;
+            while (newKeys[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            newKeys[i] = keys[j];
+            newVals[i] = vals[j];
+        }
+        keys = newKeys;
+        vals = newVals;
+        capacity = newCapacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return "Long Hashtable";
+        else
+            return String.format("Long Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+/**
+ * Makes {@link LongHashtable}s. They only hold {@code Long} keys and values, so this supplier must only be asked for
+ * a {@code Dictionary<Long, Long>}.
+ */
+class LongHashtableSupplier implements DictionarySupplier {
+    private final double max;
+    private final double min;
+    
+    public LongHashtableSupplier(double maximum, double minimum) {
+        max = maximum;
+        min = minimum;
+    }
+    
+    public LongHashtableSupplier() {
+        this(LongHashtable.DEF_MAX, LongHashtable.DEF_MIN);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return (Dictionary<K, V>) (Dictionary<?, ?>) new LongHashtable(max, min);
+    }
+    
+    public String toString() {
+        if (max == LongHashtable.DEF_MAX && min == LongHashtable.DEF_MIN)
+            return "LongHT";
+        else
+            return String.format("LongHT(%d/%d)", (int) (max * 100), (int) (min * 100));
+    }
+}
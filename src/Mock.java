@@ -1,4 +1,7 @@
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 class Mock<K extends Comparable<K>, V> implements Dictionary<K, V> {
@@ -28,6 +31,10 @@ class Mock<K extends Comparable<K>, V> implements Dictionary<K, V> {
         return new HashSet<K>();
     }
     
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return Collections.<Map.Entry<K, V>> emptyIterator();
+    }
+    
     public V put(K key, V val) {
         return null;
     }
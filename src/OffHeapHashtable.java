@@ -0,0 +1,580 @@
+/*
+ * OffHeapHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A linear-probing hash table whose slots live outside the Java heap, in a direct {@code ByteBuffer} or a
+ * memory-mapped file.
+ * <p>
+ * Keys and values must encode to a fixed number of bytes; a {@link Codec} for each does the encoding. Every slot is
+ * laid out as a state byte, the cached hash, the key bytes and the value bytes, so the garbage collector never sees the
+ * entries no matter how many there are. Keys are hashed and compared by their encoded bytes, so two keys are the same
+ * key exactly when they encode the same way. Probing and backward-shift deletion work as in {@link ProbingHashtable}.
+ * <p>
+ * A table built on a file keeps a header (magic number, key and value widths, capacity and size) in front of the
+ * slots, so a later {@code OffHeapHashtable} can be opened on the same file without rebuilding anything. Call
+ * {@link #flush()} to push the changes to the disk. A resize never touches the file in place: the new table is built
+ * in a file beside it, named with a {@code .resize} suffix, forced to the disk, and then renamed over the old one, so
+ * a crash during a resize leaves the file as it was at the last flush.
+ * <p>
+ * A {@code ByteBuffer} is indexed by {@code int}, so one table can't be bigger than 2 GB; with 4-byte keys and values
+ * that is about 134 million slots. Going past that would mean splitting the table across several buffers.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class OffHeapHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static double DEF_MAX = 0.75;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    
+    private static final int MIN_CAPACITY = 16; // The minimum number of slots; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    private static final int MAGIC = 0x4f484854; // "OHHT"
+    private static final int HEADER = 32; // Bytes before the first slot: magic, key width, value width, capacity, size.
+    private static final int SIZE_OFFSET = 16;
+    
+    // Offsets within a slot
+    private static final int STATE = 0; // 0 for an empty slot, 1 for a full one
+    private static final int HASH = 1;
+    private static final int KEY = 5;
+    
+    /**
+     * Turns values into a fixed number of bytes and back.
+     * 
+     * @param <T> the type encoded
+     */
+    public interface Codec<T> {
+        /**
+         * Returns how many bytes every encoded value takes.
+         * 
+         * @return the width in bytes
+         */
+        int width();
+        
+        /**
+         * Writes {@code value} into {@code buf}, starting at {@code offset}.
+         * 
+         * @param buf the buffer
+         * @param offset the first byte to write
+         * @param value the value to encode
+         */
+        void write(ByteBuffer buf, int offset, T value);
+        
+        /**
+         * Reads a value from {@code buf}, starting at {@code offset}.
+         * 
+         * @param buf the buffer
+         * @param offset the first byte to read
+         * @return the decoded value
+         */
+        T read(ByteBuffer buf, int offset);
+        
+        static final Codec<Integer> INTEGER = new Codec<Integer>() {
+            public int width() {
+                return 4;
+            }
+            
+            public void write(ByteBuffer buf, int offset, Integer value) {
+                buf.putInt(offset, value);
+            }
+            
+            public Integer read(ByteBuffer buf, int offset) {
+                return buf.getInt(offset);
+            }
+        };
+        
+        static final Codec<Long> LONG = new Codec<Long>() {
+            public int width() {
+                return 8;
+            }
+            
+            public void write(ByteBuffer buf, int offset, Long value) {
+                buf.putLong(offset, value);
+            }
+            
+            public Long read(ByteBuffer buf, int offset) {
+                return buf.getLong(offset);
+            }
+        };
+    }
+    
+    private final Codec<K> keyCodec;
+    private final Codec<V> valCodec;
+    private final int keyWidth;
+    private final int valWidth;
+    private final int slotWidth;
+    
+    private final File file; // The file the slots are mapped from, or null if they are in a direct buffer.
+    private ByteBuffer buf; // The header followed by the slots.
+    private final ByteBuffer scratch; // Holds the encoded key being looked up.
+    private int size; // The current number of elements.
+    private int capacity; // Current number of slots.
+    
+    private final double maxFullness; // determines how full the array can get before resizing occurs
+    private final double minFullness; // determines how empty the array can get before resizing occurs
+    private final double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code OffHeapHashtable} in a direct buffer with the specified {@code maximum},
+     * {@code minimum}, and {@code set} fullness ratios
+     * 
+     * @param keyCodec encodes the keys
+     * @param valCodec encodes the values
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public OffHeapHashtable(Codec<K> keyCodec, Codec<V> valCodec, double maximum, double minimum, double set)
+            throws IllegalArgumentException {
+        this(keyCodec, valCodec, maximum, minimum, set, null);
+    }
+    
+    /**
+     * Checks the arguments and sets up everything but the slots. If {@code file} is {@code null}, the slots go in a new
+     * direct buffer; otherwise the caller maps them from the file.
+     */
+    private OffHeapHashtable(Codec<K> keyCodec, Codec<V> valCodec, double maximum, double minimum, double set,
+            File file) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        if (keyCodec.width() <= 0 || valCodec.width() <= 0)
+            throw new IllegalArgumentException("Codecs must have a positive width");
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        
+        this.keyCodec = keyCodec;
+        this.valCodec = valCodec;
+        keyWidth = keyCodec.width();
+        valWidth = valCodec.width();
+        slotWidth = KEY + keyWidth + valWidth;
+        scratch = ByteBuffer.allocate(keyWidth).order(ByteOrder.LITTLE_ENDIAN);
+        
+        this.file = file;
+        capacity = MIN_CAPACITY;
+        if (file == null) {
+            buf = allocate(MIN_CAPACITY);
+            writeHeader();
+        }
+    }
+    
+    /**
+     * Constructs an {@code OffHeapHashtable} mapped from {@code file}, with the specified {@code maximum},
+     * {@code minimum}, and {@code set} fullness ratios. If {@code file} is empty or doesn't exist, the table starts out
+     * empty; otherwise it holds whatever was last put in the file.
+     * 
+     * @param keyCodec encodes the keys
+     * @param valCodec encodes the values
+     * @param file the file to map
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if the fullness ratios are out of order (see
+     *             {@link #OffHeapHashtable(Codec, Codec, double, double, double)}), or if {@code file} wasn't written
+     *             by an {@code OffHeapHashtable} with codecs of the same widths.
+     * @throws IOException if {@code file} can't be read or mapped
+     */
+    public OffHeapHashtable(Codec<K> keyCodec, Codec<V> valCodec, File file, double maximum, double minimum, double set)
+            throws IllegalArgumentException, IOException {
+        this(keyCodec, valCodec, maximum, minimum, set, file);
+        
+        if (file.length() == 0) {
+            buf = allocate(MIN_CAPACITY);
+            writeHeader();
+            install();
+            return;
+        }
+        
+        buf = map(file, file.length());
+        if (buf.getInt(0) != MAGIC)
+            throw new IllegalArgumentException(file + " doesn't hold an OffHeapHashtable");
+        if (buf.getInt(4) != keyWidth || buf.getInt(8) != valWidth)
+            throw new IllegalArgumentException(String.format("%s holds %d-byte keys and %d-byte values", file,
+                    buf.getInt(4), buf.getInt(8)));
+        capacity = buf.getInt(12);
+        size = buf.getInt(SIZE_OFFSET);
+        if (Integer.bitCount(capacity) != 1 || file.length() < HEADER + (long) capacity * slotWidth)
+            throw new IllegalArgumentException(file + " is damaged");
+    }
+    
+    public OffHeapHashtable(Codec<K> keyCodec, Codec<V> valCodec, File file) throws IOException {
+        this(keyCodec, valCodec, file, DEF_MAX, DEF_MIN, DEF_SET);
+    }
+    
+    public OffHeapHashtable(Codec<K> keyCodec, Codec<V> valCodec) {
+        this(keyCodec, valCodec, DEF_MAX, DEF_MIN, DEF_SET);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    private int offset(int i) {
+        return HEADER + i * slotWidth;
+    }
+    
+    private boolean isFull(int i) {
+        return buf.get(offset(i) + STATE) != 0;
+    }
+    
+    /**
+     * Encodes {@code key} into the scratch buffer and returns the hash of its bytes.
+     * 
+     * @param key the key
+     * @return the hash of the encoded key
+     */
+    private int encode(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        keyCodec.write(scratch, 0, key);
+        
+        long h = keyWidth;
+        int j = 0;
+        for (; j + 8 <= keyWidth; j += 8)
+            h = (h ^ scratch.getLong(j)) * 0x9e3779b97f4a7c15L;
+        for (; j < keyWidth; j++)
+            h = (h ^ scratch.get(j)) * 0x9e3779b97f4a7c15L;
+        return Hashing.spread(h);
+    }
+    
+    /**
+     * Returns whether the key in the slot at {@code off} has the same bytes as the scratch buffer.
+     * 
+     * @param off the offset of a full slot
+     * @return whether the keys match
+     */
+    private boolean matchesScratch(int off) {
+        off += KEY;
+        int j = 0;
+        for (; j + 8 <= keyWidth; j += 8)
+            if (buf.getLong(off + j) != scratch.getLong(j))
+                return false;
+        for (; j < keyWidth; j++)
+            if (buf.get(off + j) != scratch.get(j))
+                return false;
+        return true;
+    }
+    
+    /**
+     * Returns the slot holding the key in the scratch buffer, or the empty slot where it would go.
+     * 
+     * @param h the hash of the key
+     * @return the index of the slot
+     */
+    private int getIndex(int h) {
+        int mask = capacity - 1;
+        int i = h & mask;
+        while (isFull(i)) {
+            int off = offset(i);
+            if (buf.getInt(off + HASH) == h && matchesScratch(off))
+                break;
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        int i = getIndex(encode(key));
+        return isFull(i) ? valCodec.read(buf, offset(i) + KEY + keyWidth) : null;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return isFull(getIndex(encode(key)));
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        for (int i = 0; i < capacity; i++) {
+            if (isFull(i) && value.equals(valCodec.read(buf, offset(i) + KEY + keyWidth)))
+                return true;
+        }
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (int i = 0; i < capacity; i++)
+            if (isFull(i))
+                set.add(keyCodec.read(buf, offset(i) + KEY));
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            private int next = advance(-1); // The next full slot, or capacity
+            
+            private int advance(int i) {
+                for (i++; i < capacity; i++)
+                    if (isFull(i))
+                        break;
+                return i;
+            }
+            
+            public boolean hasNext() {
+                return next < capacity;
+            }
+            
+            public Map.Entry<K, V> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                int off = offset(next);
+                Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(keyCodec.read(buf, off + KEY),
+                        valCodec.read(buf, off + KEY + keyWidth));
+                next = advance(next);
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int h = encode(key);
+        int i = getIndex(h);
+        int off = offset(i);
+        
+        if (isFull(i)) {
+            V previousValue = valCodec.read(buf, off + KEY + keyWidth);
+            valCodec.write(buf, off + KEY + keyWidth, val);
+            return previousValue;
+        }
+        
+        copy(scratch, 0, buf, off + KEY, keyWidth);
+        valCodec.write(buf, off + KEY + keyWidth, val);
+        buf.putInt(off + HASH, h);
+        buf.put(off + STATE, (byte) 1);
+        setSize(size + 1);
+        resizeIfNeeded();
+        return null;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        int i = getIndex(encode(key));
+        if (!isFull(i))
+            return null;
+        V value = valCodec.read(buf, offset(i) + KEY + keyWidth);
+        
+        // Backward-shift deletion; see ProbingHashtable.removeSlot.
+        int mask = capacity - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!isFull(j))
+                break;
+            int home = buf.getInt(offset(j) + HASH) & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                copy(buf, offset(j), buf, offset(i), slotWidth);
+                i = j;
+            }
+        }
+        buf.put(offset(i) + STATE, (byte) 0);
+        setSize(size - 1);
+        
+        resizeIfNeeded();
+        return value;
+    }
+    
+    public void clear() {
+        for (int i = 0; i < capacity; i++)
+            buf.put(offset(i) + STATE, (byte) 0);
+        setSize(0);
+        resizeIfNeeded();
+    }
+    
+    /**
+     * Writes any changes to a mapped table out to its file. Does nothing for a table in a direct buffer.
+     */
+    public void flush() {
+        if (buf instanceof MappedByteBuffer)
+            ((MappedByteBuffer) buf).force();
+    }
+    
+    private void setSize(int newSize) {
+        size = newSize;
+        buf.putInt(SIZE_OFFSET, size);
+    }
+    
+    private void writeHeader() {
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, keyWidth);
+        buf.putInt(8, valWidth);
+        buf.putInt(12, capacity);
+        buf.putInt(SIZE_OFFSET, size);
+    }
+    
+    /**
+     * Copies {@code length} bytes between two buffers, eight at a time where possible.
+     */
+    private static void copy(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff, int length) {
+        int j = 0;
+        for (; j + 8 <= length; j += 8)
+            dst.putLong(dstOff + j, src.getLong(srcOff + j));
+        for (; j < length; j++)
+            dst.put(dstOff + j, src.get(srcOff + j));
+    }
+    
+    private static ByteBuffer map(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < length)
+                raf.setLength(length);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+    
+    /**
+     * Returns the file a mapped table is rebuilt in before it replaces {@link #file}.
+     */
+    private File resizeFile() {
+        return new File(file.getPath() + ".resize");
+    }
+    
+    /**
+     * Returns a zeroed buffer with room for the header and {@code newCapacity} slots: a new direct buffer, or a new
+     * mapping of {@link #resizeFile()}, to be put in place by {@link #install()} once it's filled.
+     */
+    private ByteBuffer allocate(int newCapacity) throws IllegalStateException {
+        long length = HEADER + (long) newCapacity * slotWidth;
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalStateException("The table can't grow past the 2 GB limit of a ByteBuffer");
+        if (file == null)
+            return ByteBuffer.allocateDirect((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        
+        File next = resizeFile();
+        try {
+            // Left over if a resize was cut short; starting from an empty file means it's all zeros.
+            Files.deleteIfExists(next.toPath());
+            return map(next, length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map " + next, e);
+        }
+    }
+    
+    /**
+     * Forces a mapped table's newly built buffer to the disk and renames its file over {@link #file}. The rename is
+     * atomic, so the file holds either the old table or the new one. The mapping stays valid across the rename.
+     */
+    private void install() throws IllegalStateException {
+        ((MappedByteBuffer) buf).force();
+        try {
+            Files.move(resizeFile().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not replace " + file, e);
+        }
+    }
+    
+    /**
+     * Resizes the table and copies over the elements if the size is out of bounds. A mapped table is rebuilt in a new
+     * file, which then replaces the old one.
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity == capacity)
+            return;
+        
+        ByteBuffer old = buf;
+        int oldCapacity = capacity;
+        
+        buf = allocate(newCapacity);
+        capacity = newCapacity;
+        writeHeader();
+        
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldCapacity; j++) {
+            int from = offset(j);
+            if (old.get(from + STATE) == 0)
+                continue;
+            int i = old.getInt(from + HASH) & mask;
+            while (isFull(i))
+                i = (i + 1) & mask;
+            copy(old, from, buf, offset(i), slotWidth);
+        }
+        
+        if (file != null)
+            install();
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
+    }
+    
+    public String toString() {
+        String where = file == null ? "Off-Heap Hashtable" : "Mapped Hashtable (" + file.getName() + ")";
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return where;
+        else
+            return String.format("%s (%.2f, %.2f, %.2f)", where, maxFullness, minFullness, setFullness);
+    }
+}
+
+/**
+ * Makes {@link OffHeapHashtable}s in direct buffers, with {@code Integer} keys and values. This supplier must only be
+ * asked for a {@code Dictionary<Integer, Integer>}.
+ */
+class OffHeapHashtableSupplier implements DictionarySupplier {
+    private final double max;
+    private final double min;
+    
+    public OffHeapHashtableSupplier(double maximum, double minimum) {
+        max = maximum;
+        min = minimum;
+    }
+    
+    public OffHeapHashtableSupplier() {
+        this(OffHeapHashtable.DEF_MAX, OffHeapHashtable.DEF_MIN);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return (Dictionary<K, V>) (Dictionary<?, ?>) new OffHeapHashtable<Integer, Integer>(
+                OffHeapHashtable.Codec.INTEGER, OffHeapHashtable.Codec.INTEGER, max, min, OffHeapHashtable.DEF_SET);
+    }
+    
+    public String toString() {
+        if (max == OffHeapHashtable.DEF_MAX && min == OffHeapHashtable.DEF_MIN)
+            return "OffHT";
+        else
+            return String.format("OffHT(%d/%d)", (int) (max * 100), (int) (min * 100));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * OrderedDictionary.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A dictionary that keeps its keys sorted, and can answer questions about their order.
+ * <p>
+ * Ranges are half-open, like {@link java.util.SortedMap}'s: a range from {@code fromKey} to {@code toKey} holds the
+ * keys {@code k} with {@code fromKey <= k < toKey}. The views returned by {@link #headMap}, {@link #tailMap} and
+ * {@link #subMap} are backed by this dictionary, so changes to either show up in the other; they copy nothing.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public interface OrderedDictionary<K extends Comparable<K>, V> extends Dictionary<K, V> {
+    /**
+     * Returns the smallest key, or {@code null} if the dictionary is empty.
+     * 
+     * @return the smallest key
+     */
+    K min();
+    
+    /**
+     * Returns the largest key, or {@code null} if the dictionary is empty.
+     * 
+     * @return the largest key
+     */
+    K max();
+    
+    /**
+     * Returns the largest key less than or equal to {@code key}, or {@code null} if there is none.
+     * 
+     * @param key the key
+     * @return the largest key {@code <= key}
+     * @throws NullPointerException if the specified key is null
+     */
+    K floor(K key) throws NullPointerException;
+    
+    /**
+     * Returns the smallest key greater than or equal to {@code key}, or {@code null} if there is none.
+     * 
+     * @param key the key
+     * @return the smallest key {@code >= key}
+     * @throws NullPointerException if the specified key is null
+     */
+    K ceiling(K key) throws NullPointerException;
+    
+    /**
+     * Returns the largest key strictly less than {@code key}, or {@code null} if there is none.
+     * 
+     * @param key the key
+     * @return the largest key {@code < key}
+     * @throws NullPointerException if the specified key is null
+     */
+    K lower(K key) throws NullPointerException;
+    
+    /**
+     * Returns the smallest key strictly greater than {@code key}, or {@code null} if there is none.
+     * 
+     * @param key the key
+     * @return the smallest key {@code > key}
+     * @throws NullPointerException if the specified key is null
+     */
+    K higher(K key) throws NullPointerException;
+    
+    /**
+     * Returns an iterator over the mappings in key order.
+     * 
+     * @return an iterator over the mappings in key order
+     */
+    Iterator<Map.Entry<K, V>> iterator();
+    
+    /**
+     * Returns an iterator, in key order, over the mappings whose keys are in the range from {@code fromKey} to
+     * {@code toKey}. Either bound may be {@code null}, to leave that end of the range open. The iterator reads the
+     * mappings from the dictionary as it goes.
+     * 
+     * @param fromKey the lowest key in the range, inclusive, or {@code null}
+     * @param toKey the key the range stops before, or {@code null}
+     * @return an iterator over the mappings in the range
+     */
+    Iterator<Map.Entry<K, V>> iterator(K fromKey, K toKey);
+    
+    /**
+     * Returns a view of the mappings whose keys are less than {@code toKey}.
+     * 
+     * @param toKey the key the view stops before
+     * @return a view of the keys {@code < toKey}
+     * @throws NullPointerException if the specified key is null
+     */
+    OrderedDictionary<K, V> headMap(K toKey) throws NullPointerException;
+    
+    /**
+     * Returns a view of the mappings whose keys are greater than or equal to {@code fromKey}.
+     * 
+     * @param fromKey the lowest key in the view
+     * @return a view of the keys {@code >= fromKey}
+     * @throws NullPointerException if the specified key is null
+     */
+    OrderedDictionary<K, V> tailMap(K fromKey) throws NullPointerException;
+    
+    /**
+     * Returns a view of the mappings whose keys are in the range from {@code fromKey} to {@code toKey}.
+     * 
+     * @param fromKey the lowest key in the view
+     * @param toKey the key the view stops before
+     * @return a view of the keys {@code k} with {@code fromKey <= k < toKey}
+     * @throws NullPointerException if either key is null
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     */
+    OrderedDictionary<K, V> subMap(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException;
+}
@@ -0,0 +1,390 @@
+/*
+ * PersistentRedBlackTree.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A left-leaning red-black tree whose published nodes are never changed, so that any number of threads can read it
+ * while one thread at a time writes to it.
+ * <p>
+ * A put or delete doesn't change the nodes it passes through; it copies them ("path copying"), changes the copies, and
+ * then publishes the new root through a {@code volatile} field. The rest of the tree is shared between the old and new
+ * versions. Since a node is never changed after the root it's reachable from has been published, a reader that has read
+ * the root sees a consistent tree without taking any locks, even while writers go on publishing newer versions.
+ * <p>
+ * Each write gets a new version number, and stamps the nodes it makes with it. The rebalancing code changes a node only
+ * through {@code own}, which copies it unless the current write made it; so a write copies just the nodes on its path,
+ * plus the siblings that the rotations and color flips touch, and changes its own copies freely.
+ * <p>
+ * Every read method reads the root once, so each call sees a single version; an iterator sees the version that was
+ * current when it was made. For several reads of the same version, take a {@link #snapshot()}, which is O(1) and
+ * read-only. Writers are {@code synchronized} on the tree.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class PersistentRedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    private static final boolean BLACK = false;
+    private static final boolean RED = true;
+    
+    private volatile Node<K, V> root;
+    private final boolean snapshot; // Whether this is a read-only snapshot
+    
+    // Only used by writers, under the lock.
+    private long version; // The version of the write in progress
+    private V previousValue; // The value the put in progress replaced
+    
+    /**
+     * Makes a new, empty tree.
+     */
+    public PersistentRedBlackTree() {
+        this(null, false);
+    }
+    
+    private PersistentRedBlackTree(Node<K, V> root, boolean snapshot) {
+        this.root = root;
+        this.snapshot = snapshot;
+    }
+    
+    /**
+     * Returns a read-only view of the tree as it is now. It takes constant time, copies nothing, and never changes,
+     * whatever is written to this tree later.
+     * 
+     * @return a snapshot of the tree
+     */
+    public PersistentRedBlackTree<K, V> snapshot() {
+        return snapshot ? this : new PersistentRedBlackTree<K, V>(root, true);
+    }
+    
+    public int size() {
+        return count(root);
+    }
+    
+    public boolean isEmpty() {
+        return root == null;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return get(root, key);
+    }
+    
+    private V get(Node<K, V> n, K key) {
+        while (n != null) {
+            int cmp = key.compareTo(n.key);
+            if (cmp == 0)
+                return n.val;
+            n = cmp < 0 ? n.l : n.r;
+        }
+        return null;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return get(key) != null;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Map.Entry<K, V> entry : this)
+            if (value.equals(entry.getValue()))
+                return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>();
+        for (Map.Entry<K, V> entry : this)
+            set.add(entry.getKey());
+        return set;
+    }
+    
+    /**
+     * Returns an iterator over the mappings in key order, as they were when this method was called.
+     * 
+     * @return an iterator over the mappings in this tree
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<K, V>(root);
+    }
+    
+    public synchronized V put(K key, V val) throws NullPointerException, UnsupportedOperationException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        checkWritable();
+        
+        version++;
+        previousValue = null;
+        Node<K, V> n = own(put(root, key, val));
+        n.color = BLACK;
+        root = n;
+        
+        V value = previousValue;
+        previousValue = null;
+        return value;
+    }
+    
+    private Node<K, V> put(Node<K, V> n, K key, V val) {
+        if (n == null)
+            return new Node<K, V>(key, val, version);
+        
+        int cmp = key.compareTo(n.key);
+        n = own(n);
+        if (cmp == 0) {
+            previousValue = n.val;
+            n.val = val;
+            return n;
+        } else if (cmp < 0) {
+            n.l = put(n.l, key, val);
+        } else {
+            n.r = put(n.r, key, val);
+        }
+        return fixUp(n);
+    }
+    
+    public synchronized V delete(K key) throws NullPointerException, UnsupportedOperationException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        checkWritable();
+        
+        V value = get(root, key); // Checked first, so that deleting a missing key doesn't copy anything
+        if (value == null)
+            return null;
+        
+        version++;
+        Node<K, V> n = delete(root, key);
+        if (n != null) {
+            n = own(n);
+            n.color = BLACK;
+        }
+        root = n;
+        return value;
+    }
+    
+    /**
+     * Deletes the {@code key}, which must be in n's tree.
+     * <p>
+     * Maintains the invariant that n or n's left child is red.
+     * 
+     * @return the replacement for {@code n}
+     */
+    private Node<K, V> delete(Node<K, V> n, K key) {
+        n = own(n);
+        if (key.compareTo(n.key) < 0) {
+            if (!isRed(n.l) && !isRed(n.l.l))
+                n = moveRedLeft(n);
+            n.l = delete(n.l, key);
+        } else {
+            if (isRed(n.l))
+                n = rotateRight(n);
+            if (key.compareTo(n.key) == 0 && n.r == null)
+                return null;
+            if (!isRed(n.r) && !isRed(n.r.l))
+                n = moveRedRight(n);
+            if (key.compareTo(n.key) == 0) {
+                Node<K, V> m = n.r;
+                while (m.l != null)
+                    m = m.l;
+                n.key = m.key;
+                n.val = m.val;
+                n.r = deleteMin(n.r);
+            } else {
+                n.r = delete(n.r, key);
+            }
+        }
+        return fixUp(n);
+    }
+    
+    private Node<K, V> deleteMin(Node<K, V> n) {
+        if (n.l == null)
+            return null;
+        n = own(n);
+        if (!isRed(n.l) && !isRed(n.l.l))
+            n = moveRedLeft(n);
+        n.l = deleteMin(n.l);
+        return fixUp(n);
+    }
+    
+    public synchronized void clear() throws UnsupportedOperationException {
+        checkWritable();
+        root = null;
+    }
+    
+    private void checkWritable() throws UnsupportedOperationException {
+        if (snapshot)
+            throw new UnsupportedOperationException("A snapshot can't be changed");
+    }
+    
+    /**
+     * Returns {@code n} if the current write made it, and otherwise a copy of it that the current write can change.
+     */
+    private Node<K, V> own(Node<K, V> n) {
+        return n.version == version ? n : new Node<K, V>(n, version);
+    }
+    
+    // The rebalancing helpers are the same as RedBlackTree's, except that they own every node they change. The node
+    // passed in is always owned already.
+    
+    private Node<K, V> moveRedLeft(Node<K, V> n) {
+        flipColors(n);
+        if (isRed(n.r.l)) {
+            n.r = rotateRight(n.r);
+            n = rotateLeft(n);
+            flipColors(n);
+        }
+        return n;
+    }
+    
+    private Node<K, V> moveRedRight(Node<K, V> n) {
+        flipColors(n);
+        if (isRed(n.l.l)) {
+            n = rotateRight(n);
+            flipColors(n);
+        }
+        return n;
+    }
+    
+    private Node<K, V> fixUp(Node<K, V> n) {
+        if (isRed(n.r))
+            n = rotateLeft(n);
+        if (isRed(n.l) && isRed(n.l.l))
+            n = rotateRight(n);
+        if (isRed(n.l) && isRed(n.r))
+            flipColors(n);
+        
+        n.count = 1 + count(n.l) + count(n.r);
+        return n;
+    }
+    
+    private Node<K, V> rotateLeft(Node<K, V> n) {
+        Node<K, V> x = own(n.r);
+        n.r = x.l;
+        x.l = n;
+        x.color = n.color;
+        n.color = RED;
+        x.count = n.count;
+        n.count = 1 + count(n.l) + count(n.r);
+        return x;
+    }
+    
+    private Node<K, V> rotateRight(Node<K, V> n) {
+        Node<K, V> x = own(n.l);
+        n.l = x.r;
+        x.r = n;
+        x.color = n.color;
+        n.color = RED;
+        x.count = n.count;
+        n.count = 1 + count(n.l) + count(n.r);
+        return x;
+    }
+    
+    private void flipColors(Node<K, V> n) {
+        n.l = own(n.l);
+        n.r = own(n.r);
+        n.color = !n.color;
+        n.l.color = !n.l.color;
+        n.r.color = !n.r.color;
+    }
+    
+    private static boolean isRed(Node<?, ?> n) {
+        return n != null && n.color == RED;
+    }
+    
+    private static int count(Node<?, ?> n) {
+        return n == null ? 0 : n.count;
+    }
+    
+    public String toString() {
+        return snapshot ? "Persistent Red-Black Tree (snapshot)" : "Persistent Red-Black Tree";
+    }
+    
+    /**
+     * An in-order walk of one version of the tree, with an explicit stack.
+     */
+    private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<Node<K, V>>();
+        
+        public EntryIterator(Node<K, V> root) {
+            pushLeft(root);
+        }
+        
+        private void pushLeft(Node<K, V> n) {
+            for (; n != null; n = n.l)
+                stack.push(n);
+        }
+        
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+        
+        public Map.Entry<K, V> next() {
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+            Node<K, V> n = stack.pop();
+            pushLeft(n.r);
+            return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, n.val);
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * A node, which only the write whose version it carries may change.
+     */
+    private static class Node<K, V> {
+        private K key;
+        private V val;
+        private Node<K, V> l;
+        private Node<K, V> r;
+        private boolean color;
+        private int count; // The number of nodes in this subtree, including this one
+        private final long version;
+        
+        public Node(K key, V val, long version) {
+            this.key = key;
+            this.val = val;
+            this.color = RED;
+            this.count = 1;
+            this.version = version;
+        }
+        
+        public Node(Node<K, V> n, long version) {
+            this.key = n.key;
+            this.val = n.val;
+            this.l = n.l;
+            this.r = n.r;
+            this.color = n.color;
+            this.count = n.count;
+            this.version = version;
+        }
+    }
+}
+
+class PersistentRedBlackTreeSupplier implements DictionarySupplier {
+    public PersistentRedBlackTreeSupplier() {}
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new PersistentRedBlackTree<K, V>();
+    }
+    
+    public String toString() {
+        return "PRBT";
+    }
+}
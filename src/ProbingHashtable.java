@@ -24,10 +24,14 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
     final static double DEF_MIN = 0.25;
     final static double DEF_SET = 0.5;
     
-    private static final int MIN_CAPACITY = 11; // The minimum size of the array; when smaller than this, no down-sizing
-                                                // will occur.
+    private static final int MIN_CAPACITY = 16; // The minimum size of the array; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
     
-    private Entry<K, V>[] array; // The array holding all the key/value pairs
+    // The key/value pairs are kept in parallel arrays; slot i is empty when keys[i] is null. hashes[i] caches
+    // hash(keys[i]) so that probes can skip slots without calling equals, and resizes don't call hashCode.
+    private K[] keys;
+    private V[] vals;
+    private int[] hashes;
     private int size; // The current number of elements.
     private int capacity; // Current capacity of the array.
     
@@ -35,6 +39,20 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
     private double minFullness; // determines how empty the array can get before resizing occurs; default 3/4
     private double setFullness; // determines how full the array should be made when resizing; default 1/4
     
+    // In incremental mode, a resize doesn't rehash everything at once. The old arrays are kept, and every put or
+    // delete moves the next MIGRATION_STEP old slots over, starting from an empty slot so that no cluster is split
+    // across the start. Reads don't, so that they never move entries under an iterator. While oldKeys is non-null,
+    // every key is in exactly one of the two tables; new keys always go in the new one.
+    private static final int MIGRATION_STEP = 16;
+    
+    private final boolean incremental;
+    private K[] oldKeys;
+    private V[] oldVals;
+    private int[] oldHashes;
+    private int oldSize; // The number of elements still in the old arrays.
+    private int migrationStart; // The (empty) old slot that migration started from.
+    private int migrated; // The number of old slots, counting from migrationStart, that have been moved over.
+    
     /**
      * Constructs an empty {@code HashtableB} with the specified {@code maximum}, {@code minimum}, and {@code set}
      * fullness ratios
@@ -46,8 +64,26 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
      *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
      *             greater than one.
      */
-    @SuppressWarnings("unchecked")
     public ProbingHashtable(double maximum, double minimum, double set) throws IllegalArgumentException {
+        this(maximum, minimum, set, false);
+    }
+    
+    /**
+     * Constructs an empty {@code ProbingHashtable} with the specified fullness ratios, optionally resizing
+     * incrementally. An incremental table spreads the work of each resize over the operations that follow it, so that
+     * no single {@code put} or {@code delete} has to rehash the whole table, at the cost of some extra work on every
+     * {@code put} and {@code delete}, and a second probe on some lookups, while a resize is in progress.
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @param incremental whether resizes should be spread out over later operations
+     * @throws IllegalArgumentException if the fullness ratios are illegal, as for
+     *             {@link #ProbingHashtable(double, double, double)}
+     */
+    @SuppressWarnings("unchecked")
+    public ProbingHashtable(double maximum, double minimum, double set, boolean incremental)
+            throws IllegalArgumentException {
         if (0 >= minimum)
             throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
         if (minimum >= set)
@@ -62,8 +98,11 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
         maxFullness = maximum;
         minFullness = minimum;
         this.setFullness = set;
+        this.incremental = incremental;
         
-        array = (Entry<K, V>[]) new Entry[capacity];
+        keys = (K[]) new Comparable[capacity];
+        vals = (V[]) new Object[capacity];
+        hashes = new int[capacity];
     }
     
     public ProbingHashtable(double maximum, double minimum) throws IllegalArgumentException {
@@ -83,7 +122,7 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
     }
     
     /**
-     * A hash of the key. I used the absolute value of the key's hashcode so that I didn't get weird negative indices.
+     * A hash of the key. The key's hashcode is spread so that masking off the low bits gives a good index.
      * 
      * @param key
      * @return the hash
@@ -92,13 +131,53 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
     private int hash(K key) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
-        return Math.abs(key.hashCode());
+        return Hashing.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or the empty slot where it would go.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot
+     */
+    private int getIndex(K key, int h) {
+        return probe(keys, hashes, key, h, h & (capacity - 1));
     }
     
-    private int getIndex(K key) {
-        int i = hash(key) % capacity;
-        while (array[i] != null && !key.equals(array[i].k)) {
-            i = (i + 1) % capacity;
+    /**
+     * Returns the slot of the old arrays holding {@code key}, or -1 if it isn't there. A key whose home slot has
+     * already been migrated can only be in the part of its cluster that hasn't, so the probe starts there instead.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot, or -1
+     */
+    private int getOldIndex(K key, int h) {
+        if (oldKeys == null)
+            return -1;
+        int mask = oldKeys.length - 1;
+        int i = h & mask;
+        if (((i - migrationStart) & mask) < migrated)
+            i = (migrationStart + migrated) & mask;
+        i = probe(oldKeys, oldHashes, key, h, i);
+        return oldKeys[i] == null ? -1 : i;
+    }
+    
+    /**
+     * Probes the given arrays, starting at slot {@code i}, for the slot holding {@code key} or the first empty slot.
+     * 
+     * @param ks the keys
+     * @param hs the cached hashes
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @param i the slot to start at
+     * @return the index of the slot
+     */
+    private static <K> int probe(K[] ks, int[] hs, K key, int h, int i) {
+        int mask = ks.length - 1;
+        while (ks[i] != null && (hs[i] != h || !key.equals(ks[i]))) {
+            i = (i + 1) & mask;
         }
         return i;
     }
@@ -107,55 +186,86 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
-        int i = getIndex(key);
-        return array[i] == null ? null : array[i].v;
+        int h = hash(key);
+        int i = getIndex(key, h);
+        if (keys[i] == null) {
+            int j = getOldIndex(key, h);
+            return j < 0 ? null : oldVals[j];
+        }
+        return vals[i];
     }
     
     public boolean containsKey(K key) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
-        int i = getIndex(key);
-        return array[i] != null;
+        int h = hash(key);
+        int i = getIndex(key, h);
+        return keys[i] != null || getOldIndex(key, h) >= 0;
     }
     
     public boolean containsValue(V value) throws NullPointerException {
         if (value == null)
             throw new NullPointerException("Value is not allowed to be null");
         
-        for (Entry<K, V> p : array) {
-            if (p != null && value.equals(p.v))
+        for (V v : vals) {
+            if (v != null && value.equals(v))
                 return true;
         }
+        if (oldVals != null) {
+            for (V v : oldVals) {
+                if (v != null && value.equals(v))
+                    return true;
+            }
+        }
         
         return false;
     }
     
     public Set<K> getAllKeys() {
         Set<K> set = new HashSet<K>(size);
-        for (Entry<K, V> p : array)
-            if (p != null)
-                set.add(p.k);
+        for (K k : keys)
+            if (k != null)
+                set.add(k);
+        if (oldKeys != null)
+            for (K k : oldKeys)
+                if (k != null)
+                    set.add(k);
         return set;
     }
     
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new SlotIterator<K, V>(keys, vals, oldKeys, oldVals);
+    }
+    
     public V put(K key, V val) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         if (val == null)
             throw new NullPointerException("Value is not allowed to be null");
         
-        int i = getIndex(key);
+        migrate();
+        int h = hash(key);
+        int i = getIndex(key, h);
         
-        if (array[i] == null) { // If we are putting a new key in, increase the size.
+        if (keys[i] == null) {
+            int j = getOldIndex(key, h);
+            if (j >= 0) { // The key hasn't been migrated yet; update it where it is.
+                V previousValue = oldVals[j];
+                oldVals[j] = val;
+                return previousValue;
+            }
+            
+            // If we are putting a new key in, increase the size.
             size++;
-            array[i] = new Entry<K, V>(key, val);
+            keys[i] = key;
+            vals[i] = val;
+            hashes[i] = h;
             resizeIfNeeded(); // If we need to resize, do so.
             return null;
         } else {
-            assert key.equals(array[i].k);
-            V previousValue = array[i].v;
-            array[i].v = val;
+            V previousValue = vals[i];
+            vals[i] = val;
             return previousValue;
         }
     }
@@ -165,82 +275,202 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
             put(k, m.get(k));
     }
     
+    /**
+     * Removes the mapping for a key using backward-shift deletion; see {@link #removeSlot}.
+     */
     public V delete(K key) throws NullPointerException {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
-        List<Entry<K, V>> pairs = new ArrayList<Entry<K, V>>();
         
-        // Find our key.
-        int i = getIndex(key);
+        migrate();
         
-        if (array[i] == null)
-            return null;
+        // Find our key.
+        int h = hash(key);
+        int i = getIndex(key, h);
+        V value;
         
-        // Remove all the keys that could have been "forced over" by this key.
-        while (array[i] != null) {
-            pairs.add(array[i]);
-            array[i] = null;
-            size--;
-            i = (i + 1) % capacity;
+        if (keys[i] != null) {
+            value = vals[i];
+            removeSlot(keys, vals, hashes, i);
+        } else {
+            int j = getOldIndex(key, h);
+            if (j < 0)
+                return null;
+            value = oldVals[j];
+            removeSlot(oldKeys, oldVals, oldHashes, j);
+            oldSize--;
         }
+        size--;
         
-        V value = pairs.remove(0).v; // Remove the key we're deleting.
-        
-        for (Entry<K, V> p : pairs)
-            this.put(p.k, p.v); // Put the rest back in the hashtable.
-        
+        resizeIfNeeded();
         return value;
     }
     
-    public void clear() {
-        for (int i = 0; i < capacity; i++) {
-            array[i] = null;
+    /**
+     * Empties slot {@code i} of the given arrays using backward-shift deletion.
+     * <p>
+     * Rather than emptying the rest of the cluster and putting every entry back, the entries after the hole are walked
+     * once, and any entry whose home slot does not lie cyclically in {@code (hole, j]} is shifted back into the hole,
+     * which then moves forward to {@code j}. The walk stops at the first empty slot. No objects are allocated.
+     * <p>
+     * This is also correct for the old arrays during a migration: the migrated slots are all empty, so a cluster never
+     * reaches past them, and an entry whose home has been migrated can always move back.
+     * 
+     * @param ks the keys
+     * @param vs the values
+     * @param hs the cached hashes
+     * @param i the full slot to empty
+     */
+    private static <K, V> void removeSlot(K[] ks, V[] vs, int[] hs, int i) {
+        int mask = ks.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (ks[j] == null)
+                break;
+            int home = hs[j] & mask;
+            // The entry at j can fill the hole at i unless its home lies cyclically in (i, j].
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                ks[i] = ks[j];
+                vs[i] = vs[j];
+                hs[i] = hs[j];
+                i = j;
+            }
         }
+        ks[i] = null;
+        vs[i] = null;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        oldKeys = null;
+        oldVals = null;
+        oldHashes = null;
         size = 0;
+        oldSize = 0;
         resizeIfNeeded();
     }
     
     /**
      * Resizes the array and copies over the elements if the size is out of bounds.
-     * 
+     * <p>
+     * In incremental mode, this only starts the resize. If the new array fills up before the old one has been fully
+     * moved over, the rest is moved at once and the table is resized again right away.
      */
     private void resizeIfNeeded() {
+        if (oldKeys != null) {
+            if (size <= capacity * maxFullness)
+                return; // Let the migration in progress finish first.
+            migrate(oldKeys.length);
+        }
         if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
             return;
         }
-        int newCapacity = (int) (size / setFullness); // The size of the new array
+        // The size of the new array. Rounding to a power of two can land back on the current capacity, in which case
+        // there is nothing to do.
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity == capacity)
+            return;
         
+        K[] fromKeys = keys;
+        V[] fromVals = vals;
+        int[] fromHashes = hashes;
+        
+        @SuppressWarnings("unchecked")
+        K[] newKeys = (K[]) new Comparable[newCapacity];
         @SuppressWarnings("unchecked")
-        Entry<K, V>[] newArray = (Entry<K, V>[]) new Entry[newCapacity];
+        V[] newVals = (V[]) new Object[newCapacity];
+        this.keys = newKeys;
+        this.vals = newVals;
+        this.hashes = new int[newCapacity];
+        this.capacity = newCapacity;
+        
+        // Migration needs an empty slot to start from; a table that has just filled up completely is rehashed at once.
+        int start = 0;
+        while (start < fromKeys.length && fromKeys[start] != null)
+            start++;
+        
+        oldKeys = fromKeys;
+        oldVals = fromVals;
+        oldHashes = fromHashes;
+        oldSize = size;
+        migrationStart = start;
+        migrated = 0;
+        
+        if (!incremental || start == fromKeys.length || size == 0) {
+            migrationStart = 0;
+            migrate(fromKeys.length);
+        }
+    }
+    
+    private void migrate() {
+        if (oldKeys != null)
+            migrate(MIGRATION_STEP);
+    }
+    
+    /**
+     * Moves up to {@code slots} more slots of the old arrays over to the new ones, and drops the old arrays once they
+     * have all been moved.
+     * 
+     * @param slots how many old slots to move
+     */
+    private void migrate(int slots) {
+        int oldMask = oldKeys.length - 1;
+        int mask = capacity - 1;
+        int end = Math.min(oldKeys.length, migrated + slots);
         
-        for (int j = 0; j < capacity; j++) {
-            Entry<K, V> q = array[j];
-            if (q == null)
+        for (; migrated < end; migrated++) {
+            int j = (migrationStart + migrated) & oldMask;
+            if (oldKeys[j] == null)
                 continue;
             
-            int i = hash(q.k) % newCapacity;
-            while (newArray[i] != null && !q.k.equals(newArray[i].k)) {
-                i = (i + 1) % newCapacity; // get next index
+            // Keys are already unique, so the first empty slot is the right one.
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask; // get next index
             }
-            newArray[i] = q;
+            keys[i] = oldKeys[j];
+            vals[i] = oldVals[j];
+            hashes[i] = oldHashes[j];
+            oldKeys[j] = null;
+            oldVals[j] = null;
+            oldSize--;
+        }
+        
+        if (migrated == oldKeys.length || oldSize == 0) {
+            oldKeys = null;
+            oldVals = null;
+            oldHashes = null;
         }
-        this.array = newArray;
-        this.capacity = newCapacity;
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
     }
     
     public String toString() {
+        String name = incremental ? "Incremental Probing Hashtable" : "Probing Hashtable";
         if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
-            return String.format("Probing Hashtable");
+            return name;
         else if (setFullness == DEF_SET)
-            return String.format("Probing Hashtable (%.2f, %.2f)", maxFullness, minFullness);
+            return String.format("%s (%.2f, %.2f)", name, maxFullness, minFullness);
         else
-            return String.format("Probing Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+            return String.format("%s (%.2f, %.2f, %.2f)", name, maxFullness, minFullness, setFullness);
     }
     
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.hashCode(this.array);
+        result = prime * result + Arrays.hashCode(this.keys);
+        result = prime * result + Arrays.hashCode(this.vals);
+        result = prime * result + Arrays.hashCode(this.oldKeys);
+        result = prime * result + Arrays.hashCode(this.oldVals);
         result = prime * result + this.capacity;
         long temp;
         temp = Double.doubleToLongBits(this.maxFullness);
@@ -249,6 +479,7 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
         result = prime * result + (int) (temp ^ (temp >>> 32));
         temp = Double.doubleToLongBits(this.setFullness);
         result = prime * result + (int) (temp ^ (temp >>> 32));
+        result = prime * result + (this.incremental ? 1231 : 1237);
         result = prime * result + this.size;
         return result;
     }
@@ -261,7 +492,15 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
         if (!(obj instanceof ProbingHashtable))
             return false;
         ProbingHashtable<?, ?> other = (ProbingHashtable<?, ?>) obj;
-        if (!Arrays.equals(this.array, other.array))
+        if (!Arrays.equals(this.keys, other.keys))
+            return false;
+        if (!Arrays.equals(this.vals, other.vals))
+            return false;
+        if (!Arrays.equals(this.oldKeys, other.oldKeys))
+            return false;
+        if (!Arrays.equals(this.oldVals, other.oldVals))
+            return false;
+        if (this.incremental != other.incremental)
             return false;
         if (this.capacity != other.capacity)
             return false;
@@ -275,74 +514,14 @@ public class ProbingHashtable<K extends Comparable<K>, V> implements Dictionary<
             return false;
         return true;
     }
-    
-    /**
-     * A key-value pair
-     * 
-     * @param <K> Key
-     * @param <V> Value
-     */
-    static class Entry<K, V> implements Map.Entry<K, V> {
-        final K k;
-        V v;
-        
-        public Entry(K key, V val) {
-            k = key;
-            v = val;
-        }
-        
-        public K getKey() {
-            return k;
-        }
-        
-        public V getValue() {
-            return v;
-        }
-        
-        public V setValue(V value) {
-            V oldVal = v;
-            v = value;
-            return oldVal;
-        }
-        
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((this.k == null) ? 0 : this.k.hashCode());
-            result = prime * result + ((this.v == null) ? 0 : this.v.hashCode());
-            return result;
-        }
-        
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (!(obj instanceof Entry))
-                return false;
-            
-            @SuppressWarnings("unchecked")
-            Entry<K, V> other = (Entry<K, V>) obj;
-            
-            if (this.k == null) {
-                if (other.k != null)
-                    return false;
-            } else if (!this.k.equals(other.k))
-                return false;
-            if (this.v == null) {
-                if (other.v != null)
-                    return false;
-            } else if (!this.v.equals(other.v))
-                return false;
-            return true;
-        }
-    }
+
 }
 
 class ProbingHashtableSupplier implements DictionarySupplier {
     private double max; // determines how full the array can get before resizing occurs; default 1/2
     private double min; // determines how empty the array can get before resizing occurs; default 3/4
     private double set; // determines how full the array should be made when resizing; default 1/4
+    private boolean incremental; // whether resizes are spread out over later operations
     
     /**
      * Constructs empty {@code HashtableB}'s with the specified {@code maximum}, {@code minimum}, and {@code set}
@@ -351,13 +530,19 @@ class ProbingHashtableSupplier implements DictionarySupplier {
      * @param maximum the maximum fullness
      * @param minimum the minimum fullness
      * @param setFullness the fullness when the arrays are resized
+     * @param incrementalResize whether resizes are spread out over later operations
      * 
      * @see ProbingHashtable
      */
-    public ProbingHashtableSupplier(double maximum, double minimum, double setFullness) {
+    public ProbingHashtableSupplier(double maximum, double minimum, double setFullness, boolean incrementalResize) {
         max = maximum;
         min = minimum;
         set = setFullness;
+        incremental = incrementalResize;
+    }
+    
+    public ProbingHashtableSupplier(double maximum, double minimum, double setFullness) {
+        this(maximum, minimum, setFullness, false);
     }
     
     public ProbingHashtableSupplier(double maximum, double minimum) {
@@ -369,15 +554,16 @@ class ProbingHashtableSupplier implements DictionarySupplier {
     }
     
     public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
-        return new ProbingHashtable<K, V>(max, min, set);
+        return new ProbingHashtable<K, V>(max, min, set, incremental);
     }
     
     public String toString() {
+        String name = incremental ? "iPHT" : "PHT";
         if (max == ProbingHashtable.DEF_MAX && min == ProbingHashtable.DEF_MIN && set == ProbingHashtable.DEF_SET)
-            return "PHT";
+            return name;
         else if (set == 0.5)
-            return String.format("PHT(%d/%d)", (int) (max * 100), (int) (min * 100));
+            return String.format("%s(%d/%d)", name, (int) (max * 100), (int) (min * 100));
         else
-            return String.format("PHT(%d/%d/%d)", (int) (max * 100), (int) (min * 100), (int) (set * 100));
+            return String.format("%s(%d/%d/%d)", name, (int) (max * 100), (int) (min * 100), (int) (set * 100));
     }
 }
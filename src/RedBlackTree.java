@@ -1,9 +1,25 @@
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * A left-leaning red-black binary search tree implementation.
  * <p>
+ * Since the keys are kept sorted, the tree is an {@link OrderedDictionary}. Its range iterators walk the tree in order
+ * with an explicit stack, starting from the first key in the range, and stop at the end of the range.
+ * <p>
+ * Each node also keeps the size of its subtree, which is what lets {@link #rank}, {@link #select} and
+ * {@link #countInRange} run in logarithmic time. The rotations and {@code fixUp} keep the sizes right, and every node
+ * that a put or delete changes goes through {@code fixUp} on the way back up.
+ * <p>
  * In adding deletion functionality, I used Robert Sedgewick's [TITLE] - {@link http://www.cs.princeton.edu/~rs/talks/LLRB/LLRB.pdf}.
  * 
  * @author Jackson Scholl
@@ -11,12 +27,15 @@ import java.util.Set;
  * @param <K> The key type
  * @param <V> The value type
  */
-public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V> {
+public class RedBlackTree<K extends Comparable<K>, V> implements OrderedDictionary<K, V> {
     private static final boolean BLACK = false;
     private static final boolean RED = true;
+    // About how many steps down the tree a put takes in the time a rebuild spends on each entry; see putAllSorted.
+    private static final int REBUILD_COST = 7;
     
     private Node root;
     private int size;
+    private V previousValue; // The value the last put or delete found for its key, set during the walk down
     
     /**
      * Makes a new red-black tree.
@@ -26,6 +45,39 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         size = 0;
     }
     
+    /**
+     * Makes a tree out of keys given in increasing order, in linear time; see {@link #putAllSorted}.
+     * 
+     * @param keys the keys, in strictly increasing order
+     * @param vals the values, {@code vals[i]} going with {@code keys[i]}
+     * @return a new tree holding the mappings
+     * @throws NullPointerException if a key or value is null
+     * @throws IllegalArgumentException if the arrays are different lengths, or the keys aren't in increasing order
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(K[] keys, V[] vals)
+            throws NullPointerException, IllegalArgumentException {
+        if (keys.length != vals.length)
+            throw new IllegalArgumentException("Different numbers of keys and values");
+        RedBlackTree<K, V> tree = new RedBlackTree<K, V>();
+        tree.build(Arrays.asList(keys), Arrays.asList(vals));
+        return tree;
+    }
+    
+    /**
+     * Makes a tree out of mappings given in increasing key order, in linear time; see {@link #putAllSorted}.
+     * 
+     * @param entries the mappings, in strictly increasing key order
+     * @return a new tree holding the mappings
+     * @throws NullPointerException if a key or value is null
+     * @throws IllegalArgumentException if the keys aren't in increasing order
+     */
+    public static <K extends Comparable<K>, V> RedBlackTree<K, V> fromSorted(
+            Iterator<? extends Map.Entry<K, V>> entries) throws NullPointerException, IllegalArgumentException {
+        RedBlackTree<K, V> tree = new RedBlackTree<K, V>();
+        tree.putAllSorted(entries);
+        return tree;
+    }
+    
     public int size() {
         return size;
     }
@@ -38,15 +90,14 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
-        return get(root, key);
-    }
-    
-    private V get(Node n, K key) {
-        if (n == null)
-            return null;
-        if (key.equals(n.key))
-            return n.val;
-        return get(key.compareTo(n.key) < 0 ? n.l : n.r, key);
+        Node n = root;
+        while (n != null) {
+            int cmp = key.compareTo(n.key);
+            if (cmp == 0)
+                return n.val;
+            n = cmp < 0 ? n.l : n.r;
+        }
+        return null;
     }
     
     public boolean containsKey(K key) throws NullPointerException {
@@ -70,16 +121,170 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
     }
     
     public Set<K> getAllKeys() {
-        return getAllKeys(root);
+        Set<K> set = new HashSet<K>(size);
+        for (Map.Entry<K, V> entry : this)
+            set.add(entry.getKey());
+        return set;
     }
     
-    private Set<K> getAllKeys(Node n) {
+    /**
+     * Returns an iterator over the mappings in key order.
+     * 
+     * @return an iterator over the mappings in this tree
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator(K fromKey, K toKey) {
+        return new EntryIterator(fromKey, toKey);
+    }
+    
+    public K min() {
+        Node n = min(root);
+        return n == null ? null : n.key;
+    }
+    
+    public K max() {
+        Node n = root;
         if (n == null)
-            return new HashSet<K>();
-        Set<K> set = getAllKeys(n.l);
-        set.add(n.key);
-        set.addAll(getAllKeys(n.r));
-        return set;
+            return null;
+        while (n.r != null)
+            n = n.r;
+        return n.key;
+    }
+    
+    public K floor(K key) throws NullPointerException {
+        return nearest(key, true, true);
+    }
+    
+    public K ceiling(K key) throws NullPointerException {
+        return nearest(key, false, true);
+    }
+    
+    public K lower(K key) throws NullPointerException {
+        return nearest(key, true, false);
+    }
+    
+    public K higher(K key) throws NullPointerException {
+        return nearest(key, false, false);
+    }
+    
+    /**
+     * Returns the closest key to {@code key} on one side of it, in one walk down the tree.
+     * 
+     * @param key the key to search from
+     * @param below whether to look for keys less than {@code key}, rather than greater
+     * @param inclusive whether {@code key} itself counts
+     * @return the closest key, or {@code null} if there is none
+     */
+    private K nearest(K key, boolean below, boolean inclusive) {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        K best = null;
+        Node n = root;
+        while (n != null) {
+            int cmp = key.compareTo(n.key);
+            if (cmp == 0 && inclusive)
+                return n.key;
+            if (below ? cmp > 0 : cmp < 0) {
+                best = n.key;
+                n = below ? n.r : n.l;
+            } else {
+                n = below ? n.l : n.r;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Returns the number of keys less than {@code key}. That's the index {@code key} has in key order, if it's in the
+     * tree, and the index it would have if it were put in otherwise.
+     * 
+     * @param key the key
+     * @return the number of keys {@code < key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public int rank(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        int rank = 0;
+        Node n = root;
+        while (n != null) {
+            int cmp = key.compareTo(n.key);
+            if (cmp <= 0) {
+                if (cmp == 0)
+                    return rank + count(n.l);
+                n = n.l;
+            } else {
+                rank += count(n.l) + 1;
+                n = n.r;
+            }
+        }
+        return rank;
+    }
+    
+    /**
+     * Returns the key with index {@code i} in key order, so {@code select(0)} is the smallest key and
+     * {@code select(size() - 1)} the largest.
+     * 
+     * @param i the index
+     * @return the key with {@code i} smaller keys
+     * @throws IndexOutOfBoundsException if {@code i} is negative or not less than the size
+     */
+    public K select(int i) throws IndexOutOfBoundsException {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        
+        Node n = root;
+        while (true) {
+            int left = count(n.l);
+            if (i < left) {
+                n = n.l;
+            } else if (i > left) {
+                i -= left + 1;
+                n = n.r;
+            } else {
+                return n.key;
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of keys in the range from {@code fromKey} to {@code toKey}, in two walks down the tree.
+     * 
+     * @param fromKey the lowest key in the range
+     * @param toKey the key the range stops before
+     * @return the number of keys {@code k} with {@code fromKey <= k < toKey}
+     * @throws NullPointerException if either key is null
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     */
+    public int countInRange(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (fromKey.compareTo(toKey) > 0)
+            throw new IllegalArgumentException("fromKey is greater than toKey");
+        return rank(toKey) - rank(fromKey);
+    }
+    
+    public OrderedDictionary<K, V> headMap(K toKey) throws NullPointerException {
+        if (toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, null, toKey);
+    }
+    
+    public OrderedDictionary<K, V> tailMap(K fromKey) throws NullPointerException {
+        if (fromKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, null);
+    }
+    
+    public OrderedDictionary<K, V> subMap(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return new SubDictionary<K, V>(this, fromKey, toKey);
     }
     
     public V put(K key, V val) throws NullPointerException {
@@ -88,12 +293,13 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         if (val == null)
             throw new NullPointerException("Value is not allowed to be null");
         
-        V previousValue = get(key);
-        
+        previousValue = null;
         root = put(root, key, val);
         root.color = BLACK;
         
-        return previousValue;
+        V value = previousValue;
+        previousValue = null;
+        return value;
     }
     
     private Node put(Node n, K key, V value) {
@@ -103,6 +309,7 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         int cmp = key.compareTo(n.key);
         
         if (cmp == 0) {
+            previousValue = n.val;
             n.val = value;
         } else if (cmp < 0) {
             n.l = put(n.l, key, value);
@@ -113,23 +320,171 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         return fixUp(n);
     }
     
+    /**
+     * Puts every mapping from {@code entries}, which must be in increasing key order. Where a key is already in the
+     * tree, the new value replaces the old one.
+     * <p>
+     * A batch of {@code m} mappings into a tree of {@code n} can go in either with {@code m} plain {@code put}s, in
+     * {@code O(m log n)} time, or by merging it with the tree's own mappings, which come out of an in-order walk
+     * already sorted, and building a new tree from the merged run all at once (see {@code build}), in
+     * {@code O(n + m)}. This picks the puts when {@code m log2(n + m) < REBUILD_COST * (n + m)}, so small batches
+     * into a big tree don't pay for copying the whole tree, and the rebuild otherwise, which includes filling an empty
+     * tree.
+     * 
+     * @param entries the mappings to put, in strictly increasing key order
+     * @throws NullPointerException if a key or value is null
+     * @throws IllegalArgumentException if the keys aren't in increasing order; the tree is left unchanged
+     */
+    public void putAllSorted(Iterator<? extends Map.Entry<K, V>> entries) throws NullPointerException,
+            IllegalArgumentException {
+        // The whole batch is checked before any of it goes in, so a bad one leaves the tree unchanged either way.
+        List<K> newKeys = new ArrayList<K>();
+        List<V> newVals = new ArrayList<V>();
+        while (entries.hasNext()) {
+            Map.Entry<K, V> e = entries.next();
+            if (e.getKey() == null)
+                throw new NullPointerException("Key is not allowed to be null");
+            if (e.getValue() == null)
+                throw new NullPointerException("Value is not allowed to be null");
+            int i = newKeys.size();
+            if (i > 0 && newKeys.get(i - 1).compareTo(e.getKey()) >= 0)
+                throw new IllegalArgumentException("Keys are not in increasing order: " + newKeys.get(i - 1) + ", "
+                        + e.getKey());
+            newKeys.add(e.getKey());
+            newVals.add(e.getValue());
+        }
+        
+        int m = newKeys.size();
+        int log = 32 - Integer.numberOfLeadingZeros(size + m); // About log2 of the size the puts work up to
+        if ((long) m * log < (long) REBUILD_COST * (size + m)) {
+            for (int i = 0; i < m; i++)
+                put(newKeys.get(i), newVals.get(i));
+            return;
+        }
+        
+        List<K> keys = new ArrayList<K>(size + m);
+        List<V> vals = new ArrayList<V>(size + m);
+        Iterator<Map.Entry<K, V>> old = iterator();
+        Map.Entry<K, V> a = old.hasNext() ? old.next() : null;
+        for (int i = 0; i < m; i++) {
+            K b = newKeys.get(i);
+            int cmp;
+            while (a != null && (cmp = a.getKey().compareTo(b)) <= 0) {
+                if (cmp < 0) {
+                    keys.add(a.getKey());
+                    vals.add(a.getValue());
+                }
+                a = old.hasNext() ? old.next() : null;
+            }
+            keys.add(b);
+            vals.add(newVals.get(i));
+        }
+        for (; a != null; a = old.hasNext() ? old.next() : null) {
+            keys.add(a.getKey());
+            vals.add(a.getValue());
+        }
+        
+        build(keys, vals);
+    }
+    
+    /**
+     * Replaces the tree with one holding the given mappings, in linear time.
+     * <p>
+     * A left-leaning red-black tree is a 2-3 tree with each 3-node drawn as a black node with a red left child, so the
+     * tree is built as a 2-3 tree: every path from the root to a leaf has the same number of (2- or 3-) nodes, its
+     * black height {@code h}. A subtree of black height {@code h} can hold anywhere from {@code 2^h - 1} keys (all
+     * 2-nodes) to {@code 3^h - 1} (all 3-nodes), so for {@code n} keys the root gets the largest {@code h} with
+     * {@code 2^h - 1 <= n}. Each subtree's root is then a 2-node if its keys fit under two children of black height
+     * {@code h - 1}, or else a 3-node; and its keys are split as evenly as possible between the children.
+     * 
+     * @param keys the keys, in strictly increasing order
+     * @param vals the values, in the same order
+     * @throws NullPointerException if a key or value is null
+     * @throws IllegalArgumentException if the keys aren't in increasing order; the tree is left unchanged
+     */
+    private void build(List<K> keys, List<V> vals) throws NullPointerException, IllegalArgumentException {
+        int n = keys.size();
+        for (int i = 0; i < n; i++) {
+            if (keys.get(i) == null)
+                throw new NullPointerException("Key is not allowed to be null");
+            if (vals.get(i) == null)
+                throw new NullPointerException("Value is not allowed to be null");
+            if (i > 0 && keys.get(i - 1).compareTo(keys.get(i)) >= 0)
+                throw new IllegalArgumentException("Keys are not in increasing order: " + keys.get(i - 1) + ", "
+                        + keys.get(i));
+        }
+        
+        int h = 31 - Integer.numberOfLeadingZeros(n + 1);
+        size = 0; // The Node constructor counts the nodes back up.
+        root = build(keys, vals, 0, n, h);
+        if (root != null)
+            root.color = BLACK;
+    }
+    
+    /**
+     * Builds a subtree of black height {@code h} out of the keys from {@code lo} up to {@code hi}, of which there must
+     * be from {@code 2^h - 1} to {@code 3^h - 1}.
+     * 
+     * @return the root of the subtree
+     */
+    private Node build(List<K> keys, List<V> vals, int lo, int hi, int h) {
+        int m = hi - lo;
+        if (h == 0)
+            return null;
+        
+        long childMax = pow3(h - 1) - 1; // The most keys a child can hold
+        Node n;
+        if (m - 1 <= 2 * childMax) { // A 2-node
+            int mid = lo + (m - 1) / 2;
+            n = new Node(keys.get(mid), vals.get(mid));
+            n.l = build(keys, vals, lo, mid, h - 1);
+            n.r = build(keys, vals, mid + 1, hi, h - 1);
+        } else { // A 3-node
+            int first = lo + (m - 2) / 3;
+            int second = first + 1 + (m - 2 - (first - lo)) / 2;
+            Node red = new Node(keys.get(first), vals.get(first));
+            red.l = build(keys, vals, lo, first, h - 1);
+            red.r = build(keys, vals, first + 1, second, h - 1);
+            red.count = 1 + count(red.l) + count(red.r);
+            n = new Node(keys.get(second), vals.get(second));
+            n.l = red;
+            n.r = build(keys, vals, second + 1, hi, h - 1);
+        }
+        n.color = BLACK;
+        n.count = m;
+        return n;
+    }
+    
+    private static long pow3(int e) {
+        long p = 1;
+        for (int i = 0; i < e; i++)
+            p *= 3;
+        return p;
+    }
+    
     public V delete(K key) {
         if (key == null)
             throw new NullPointerException("Key is not allowed to be null");
         
-        V previousValue = get(key);
+        if (root == null)
+            return null;
         
+        previousValue = null;
         root = delete(root, key);
         if (root != null)
             root.color = BLACK;
         
-        return previousValue;
+        V value = previousValue;
+        previousValue = null;
+        return value;
     }
     
     /**
-     * Delete the {@code key}, assuming it's a descendant of n.
+     * Delete the {@code key} from n's tree, if it's there, and set {@code previousValue} to its value.
      * <p>
-     * Maintains the invariant that n or n's left child is red.
+     * Maintains the invariant that n or n's left child is red. The key is compared with each node on the path once:
+     * the rotations only ever bring up a node's left child while the search is going right, so the new node is known to
+     * be smaller than the key without comparing it.
      * 
      * @param n
      * @param key
@@ -138,23 +493,35 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
     private Node delete(Node n, K key) {
         if (n == null)
             return null;
-        if (key.compareTo(n.key) < 0) {
+        int cmp = key.compareTo(n.key);
+        if (cmp < 0) {
             if (!isRed(n.l) && n.l != null && !isRed(n.l.l)) {
                 n = moveRedLeft(n);
             }
             n.l = delete(n.l, key);
         } else {
-            if (isRed(n.l))
+            if (isRed(n.l)) {
                 n = rotateRight(n);
-            if (key.compareTo(n.key) == 0 && n.r == null) {
+                cmp = 1;
+            }
+            if (n.r == null) {
+                if (cmp != 0)
+                    return fixUp(n); // The key isn't in the tree
+                previousValue = n.val;
                 size--;
                 return null;
             }
-            if (!isRed(n.r) && !isRed(n.r.l))
-                n = moveRedRight(n);
-            if (key.compareTo(n.key) == 0) {
-                n.val = get(n.r, min(n.r).key);
-                n.key = min(n.r).key;
+            if (!isRed(n.r) && !isRed(n.r.l)) {
+                Node x = moveRedRight(n);
+                if (x != n)
+                    cmp = 1;
+                n = x;
+            }
+            if (cmp == 0) {
+                Node m = min(n.r);
+                previousValue = n.val;
+                n.key = m.key;
+                n.val = m.val;
                 n.r = deleteMin(n.r);
             } else {
                 n.r = delete(n.r, key);
@@ -226,8 +593,9 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
     private Node min(Node n) {
         if (n == null)
             return null;
-        Node x = min(n.l);
-        return x == null ? n : x;
+        while (n.l != null)
+            n = n.l;
+        return n;
     }
     
     /**
@@ -244,6 +612,7 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         if (isRed(n.l) && isRed(n.r))
             n = flipColors(n);
         
+        n.count = 1 + count(n.l) + count(n.r);
         return n;
     }
     
@@ -259,6 +628,8 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         x.l = n;
         x.color = n.color;
         n.color = RED;
+        x.count = n.count;
+        n.count = 1 + count(n.l) + count(n.r);
         return x;
     }
     
@@ -274,6 +645,8 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         x.r = n;
         x.color = n.color;
         n.color = RED;
+        x.count = n.count;
+        n.count = 1 + count(n.l) + count(n.r);
         return x;
     }
     
@@ -294,26 +667,82 @@ public class RedBlackTree<K extends Comparable<K>, V> implements Dictionary<K, V
         return n != null && n.color == RED;
     }
     
+    private int count(Node n) {
+        return n == null ? 0 : n.count;
+    }
+    
     public void clear() {
-        for (K key : getAllKeys())
-            delete(key);
+        root = null;
+        size = 0;
     }
     
     public String toString() {
         return "Red-Black Tree";
     }
     
+    /**
+     * An in-order walk of the tree, over the keys from {@code lo} up to {@code hi}. The stack holds the nodes whose
+     * left subtrees are being walked, so it never gets deeper than the tree.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Node> stack = new ArrayDeque<Node>();
+        private final K hi; // The key to stop before, or null to go to the end.
+        
+        /**
+         * Starts the walk at the first key {@code >= lo}. The nodes on the path down to it with keys {@code >= lo} are
+         * exactly the ones whose left subtrees are still to be finished.
+         * 
+         * @param lo the lowest key to return, or {@code null} to start at the smallest
+         * @param hi the key to stop before, or {@code null} to go to the end
+         */
+        public EntryIterator(K lo, K hi) {
+            this.hi = hi;
+            Node n = root;
+            while (n != null) {
+                if (lo != null && n.key.compareTo(lo) < 0) {
+                    n = n.r;
+                } else {
+                    stack.push(n);
+                    n = n.l;
+                }
+            }
+        }
+        
+        private void pushLeft(Node n) {
+            for (; n != null; n = n.l)
+                stack.push(n);
+        }
+        
+        public boolean hasNext() {
+            return !stack.isEmpty() && (hi == null || stack.peek().key.compareTo(hi) < 0);
+        }
+        
+        public Map.Entry<K, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node n = stack.pop();
+            pushLeft(n.r);
+            return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, n.val);
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
     class Node {
         private K key;
         private V val;
         private Node l;
         private Node r;
         private boolean color;
+        private int count; // The number of nodes in this subtree, including this one
         
         public Node(K word, V def) {
             key = word;
             val = def;
             color = RED;
+            count = 1;
             size++;
         }
         
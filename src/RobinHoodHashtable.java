@@ -0,0 +1,347 @@
+/*
+ * RobinHoodHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * A linear-probing hash table that uses Robin Hood displacement.
+ * <p>
+ * Every entry has a probe distance: how far its slot is past its home slot. On insert, an entry that has probed
+ * farther than the entry sitting in a slot takes that slot, and the displaced entry carries on probing. This evens out
+ * probe distances, so the longest probes are much shorter than in {@link ProbingHashtable} at the same fullness. It
+ * also lets a lookup stop early: once it reaches an entry that is closer to home than the lookup has probed, the key
+ * can't be any farther along.
+ * <p>
+ * Deletion uses backward shift, which here is simpler than in {@code ProbingHashtable}: every following entry that
+ * isn't already in its home slot moves back by one.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class RobinHoodHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static double DEF_MAX = 0.75;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    
+    private static final int MIN_CAPACITY = 16; // The minimum size of the array; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    
+    // The key/value pairs are kept in parallel arrays; slot i is empty when keys[i] is null. hashes[i] caches
+    // hash(keys[i]), which also gives the probe distance of the entry.
+    private K[] keys;
+    private V[] vals;
+    private int[] hashes;
+    private int size; // The current number of elements.
+    private int capacity; // Current capacity of the array.
+    
+    private double maxFullness; // determines how full the array can get before resizing occurs
+    private double minFullness; // determines how empty the array can get before resizing occurs
+    private double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code RobinHoodHashtable} with the specified {@code maximum}, {@code minimum}, and
+     * {@code set} fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public RobinHoodHashtable(double maximum, double minimum, double set) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        
+        allocate(MIN_CAPACITY);
+    }
+    
+    public RobinHoodHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET);
+    }
+    
+    public RobinHoodHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    private int hash(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return Hashing.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns how far the entry in slot {@code i} is from its home slot.
+     * 
+     * @param i a full slot
+     * @return the probe distance
+     */
+    private int distance(int i) {
+        int mask = capacity - 1;
+        return (i - (hashes[i] & mask)) & mask;
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or -1 if it isn't in the table.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot, or -1
+     */
+    private int getIndex(K key, int h) {
+        int mask = capacity - 1;
+        int i = h & mask;
+        for (int dist = 0; keys[i] != null && dist <= distance(i); dist++) {
+            if (hashes[i] == h && key.equals(keys[i]))
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        int i = getIndex(key, hash(key));
+        return i < 0 ? null : vals[i];
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        return getIndex(key, hash(key)) >= 0;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        for (V v : vals) {
+            if (v != null && value.equals(v))
+                return true;
+        }
+        
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (K k : keys)
+            if (k != null)
+                set.add(k);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new SlotIterator<K, V>(keys, vals);
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int h = hash(key);
+        int i = getIndex(key, h);
+        
+        if (i >= 0) {
+            V previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        
+        size++;
+        insert(key, val, h);
+        resizeIfNeeded();
+        return null;
+    }
+    
+    /**
+     * Inserts a key that is known not to be in the table, displacing entries that are closer to home than the one
+     * being carried.
+     * 
+     * @param key the key
+     * @param val the value
+     * @param h {@code hash(key)}
+     */
+    private void insert(K key, V val, int h) {
+        int mask = capacity - 1;
+        int i = h & mask;
+        int dist = 0;
+        while (keys[i] != null) {
+            int residentDist = distance(i);
+            if (residentDist < dist) {
+                // The resident is richer than us; take its slot and carry it onwards instead.
+                K k = keys[i];
+                V v = vals[i];
+                int rh = hashes[i];
+                keys[i] = key;
+                vals[i] = val;
+                hashes[i] = h;
+                key = k;
+                val = v;
+                h = rh;
+                dist = residentDist;
+            }
+            i = (i + 1) & mask;
+            dist++;
+        }
+        keys[i] = key;
+        vals[i] = val;
+        hashes[i] = h;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        int i = getIndex(key, hash(key));
+        if (i < 0)
+            return null;
+        
+        V value = vals[i];
+        
+        // Shift the rest of the run back by one, stopping at an empty slot or an entry that is already home.
+        int mask = capacity - 1;
+        int j = (i + 1) & mask;
+        while (keys[j] != null && distance(j) > 0) {
+            keys[i] = keys[j];
+            vals[i] = vals[j];
+            hashes[i] = hashes[j];
+            i = j;
+            j = (j + 1) & mask;
+        }
+        keys[i] = null;
+        vals[i] = null;
+        size--;
+        
+        resizeIfNeeded();
+        return value;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        size = 0;
+        resizeIfNeeded();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int newCapacity) {
+        keys = (K[]) new Comparable[newCapacity];
+        vals = (V[]) new Object[newCapacity];
+        hashes = new int[newCapacity];
+        capacity = newCapacity;
+    }
+    
+    /**
+     * Resizes the array and copies over the elements if the size is out of bounds.
+     * 
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY) || size > capacity * maxFullness)) {
+            return;
+        }
+        int newCapacity = Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY);
+        if (newCapacity == capacity)
+            return;
+        
+        K[] oldKeys = keys;
+        V[] oldVals = vals;
+        int[] oldHashes = hashes;
+        
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null)
+                insert(oldKeys[j], oldVals[j], oldHashes[j]);
+        }
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return String.format("Robin Hood Hashtable");
+        else if (setFullness == DEF_SET)
+            return String.format("Robin Hood Hashtable (%.2f, %.2f)", maxFullness, minFullness);
+        else
+            return String.format("Robin Hood Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+class RobinHoodHashtableSupplier implements DictionarySupplier {
+    private double max;
+    private double min;
+    private double set;
+    
+    /**
+     * Constructs empty {@code RobinHoodHashtable}'s with the specified {@code maximum}, {@code minimum}, and
+     * {@code set} fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param setFullness the fullness when the arrays are resized
+     * 
+     * @see RobinHoodHashtable
+     */
+    public RobinHoodHashtableSupplier(double maximum, double minimum, double setFullness) {
+        max = maximum;
+        min = minimum;
+        set = setFullness;
+    }
+    
+    public RobinHoodHashtableSupplier(double maximum, double minimum) {
+        this(maximum, minimum, RobinHoodHashtable.DEF_SET);
+    }
+    
+    public RobinHoodHashtableSupplier() {
+        this(RobinHoodHashtable.DEF_MAX, RobinHoodHashtable.DEF_MIN);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new RobinHoodHashtable<K, V>(max, min, set);
+    }
+    
+    public String toString() {
+        if (max == RobinHoodHashtable.DEF_MAX && min == RobinHoodHashtable.DEF_MIN
+                && set == RobinHoodHashtable.DEF_SET)
+            return "RH";
+        else if (set == 0.5)
+            return String.format("RH(%d/%d)", (int) (max * 100), (int) (min * 100));
+        else
+            return String.format("RH(%d/%d/%d)", (int) (max * 100), (int) (min * 100), (int) (set * 100));
+    }
+}
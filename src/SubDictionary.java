@@ -0,0 +1,213 @@
+/*
+ * SubDictionary.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl
+ */
+
+import java.util.*;
+
+/**
+ * A view of the keys of an {@link OrderedDictionary} in a range. Reads and writes go straight through to the backing
+ * dictionary, after checking the key against the range; nothing is copied.
+ * <p>
+ * Lookups and the navigation methods cost what they do on the backing dictionary. {@code size}, {@code isEmpty} and
+ * {@code containsValue} walk the range.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+class SubDictionary<K extends Comparable<K>, V> implements OrderedDictionary<K, V> {
+    private final OrderedDictionary<K, V> base;
+    private final K lo; // Lowest key in the view, inclusive; null if unbounded.
+    private final K hi; // Key the view stops before; null if unbounded.
+    
+    /**
+     * Makes a view of the keys of {@code base} from {@code lo} up to, but not including, {@code hi}.
+     * 
+     * @param base the backing dictionary
+     * @param lo the lowest key, or {@code null} for no lower bound
+     * @param hi the key to stop before, or {@code null} for no upper bound
+     * @throws IllegalArgumentException if {@code lo} is greater than {@code hi}
+     */
+    SubDictionary(OrderedDictionary<K, V> base, K lo, K hi) throws IllegalArgumentException {
+        if (lo != null && hi != null && lo.compareTo(hi) > 0)
+            throw new IllegalArgumentException("fromKey is greater than toKey");
+        this.base = base;
+        this.lo = lo;
+        this.hi = hi;
+    }
+    
+    private boolean tooLow(K key) {
+        return lo != null && key.compareTo(lo) < 0;
+    }
+    
+    private boolean tooHigh(K key) {
+        return hi != null && key.compareTo(hi) >= 0;
+    }
+    
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+    
+    /**
+     * Returns {@code key} if it's in the range, or else {@code null}.
+     */
+    private K clip(K key) {
+        return key != null && inRange(key) ? key : null;
+    }
+    
+    private static <K extends Comparable<K>> K greater(K a, K b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) >= 0 ? a : b;
+    }
+    
+    private static <K extends Comparable<K>> K lesser(K a, K b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) <= 0 ? a : b;
+    }
+    
+    public int size() {
+        int count = 0;
+        for (Iterator<Map.Entry<K, V>> it = iterator(); it.hasNext(); it.next())
+            count++;
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return inRange(key) ? base.get(key) : null;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return inRange(key) && base.containsKey(key);
+    }
+    
+    public boolean containsValue(V value) {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Map.Entry<K, V> entry : this)
+            if (value.equals(entry.getValue()))
+                return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>();
+        for (Map.Entry<K, V> entry : this)
+            set.add(entry.getKey());
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return base.iterator(lo, hi);
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator(K fromKey, K toKey) {
+        return base.iterator(greater(lo, fromKey), lesser(hi, toKey));
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws IllegalArgumentException if {@code key} is outside the range of this view
+     */
+    public V put(K key, V val) throws NullPointerException, IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (!inRange(key))
+            throw new IllegalArgumentException("Key is out of range: " + key);
+        return base.put(key, val);
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return inRange(key) ? base.delete(key) : null;
+    }
+    
+    /**
+     * Deletes every key in the range from the backing dictionary.
+     */
+    public void clear() {
+        List<K> keys = new ArrayList<K>();
+        for (Map.Entry<K, V> entry : this)
+            keys.add(entry.getKey());
+        for (K key : keys)
+            base.delete(key);
+    }
+    
+    public K min() {
+        return clip(lo == null ? base.min() : base.ceiling(lo));
+    }
+    
+    public K max() {
+        return clip(hi == null ? base.max() : base.lower(hi));
+    }
+    
+    public K floor(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return clip(tooHigh(key) ? base.lower(hi) : base.floor(key));
+    }
+    
+    public K ceiling(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return clip(tooLow(key) ? base.ceiling(lo) : base.ceiling(key));
+    }
+    
+    public K lower(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return clip(tooHigh(key) ? base.lower(hi) : base.lower(key));
+    }
+    
+    public K higher(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return clip(tooLow(key) ? base.ceiling(lo) : base.higher(key));
+    }
+    
+    public OrderedDictionary<K, V> headMap(K toKey) throws NullPointerException {
+        if (toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return view(lo, toKey);
+    }
+    
+    public OrderedDictionary<K, V> tailMap(K fromKey) throws NullPointerException {
+        if (fromKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return view(fromKey, hi);
+    }
+    
+    public OrderedDictionary<K, V> subMap(K fromKey, K toKey) throws NullPointerException, IllegalArgumentException {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (fromKey.compareTo(toKey) > 0)
+            throw new IllegalArgumentException("fromKey is greater than toKey");
+        return view(fromKey, toKey);
+    }
+    
+    /**
+     * Returns a view of the backing dictionary over the part of the range from {@code fromKey} to {@code toKey} that
+     * overlaps this view's range. Views of views don't stack up; they all go straight to the backing dictionary.
+     */
+    private OrderedDictionary<K, V> view(K fromKey, K toKey) {
+        K from = greater(lo, fromKey);
+        K to = lesser(hi, toKey);
+        if (from != null && to != null && from.compareTo(to) > 0)
+            to = from; // The ranges don't overlap, so the view is empty.
+        return new SubDictionary<K, V>(base, from, to);
+    }
+    
+    public String toString() {
+        return String.format("%s [%s, %s)", base, lo == null ? "" : lo, hi == null ? "" : hi);
+    }
+}
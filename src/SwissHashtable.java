@@ -0,0 +1,358 @@
+/*
+ * SwissHashtable.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * An open-addressing hash table in the style of Abseil's SwissTable: slots are probed a group of eight at a time,
+ * using a byte of metadata per slot.
+ * <p>
+ * Each slot has a control byte, which is either {@code EMPTY}, {@code DELETED}, or, for a full slot, the low seven
+ * bits of the key's hash. The control bytes are packed eight to a {@code long}, one {@code long} per group, so a
+ * lookup reads a whole group with one array access and uses bit tricks on it (SWAR, "SIMD within a register") to find
+ * every slot whose fragment matches, and whether the group has an empty slot. Only the matching slots have their keys
+ * compared, which with seven bits of hash is about one slot in 128, so lookups rarely touch the key array except to
+ * confirm a hit. Groups are probed triangularly (1, 2, 3, ... groups apart), which visits every group since there are
+ * a power of two of them.
+ * <p>
+ * A lookup stops at the first group with an empty slot. So that deletion doesn't break that, a deleted slot becomes a
+ * {@code DELETED} tombstone, unless its group still has an empty slot, in which case no probe ever went past the group
+ * and the slot can just be emptied. Tombstones are reused by inserts and cleared out when the table is rebuilt.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class SwissHashtable<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static double DEF_MAX = 0.875;
+    final static double DEF_MIN = 0.25;
+    final static double DEF_SET = 0.5;
+    
+    private static final int GROUP = 8; // Slots per group; one long of control bytes.
+    private static final int MIN_CAPACITY = 16; // The minimum number of slots; when smaller than this, no down-sizing
+                                                // will occur. Capacities are always powers of two.
+    
+    private static final int EMPTY = 0x80;
+    private static final int DELETED = 0xfe;
+    private static final long EMPTY_GROUP = 0x8080808080808080L;
+    private static final long LSBS = 0x0101010101010101L; // The low bit of every byte
+    private static final long MSBS = 0x8080808080808080L; // The high bit of every byte
+    
+    private long[] ctrl; // The control bytes, slot i in byte (i % 8) of ctrl[i / 8]
+    private K[] keys;
+    private V[] vals;
+    private int size; // The current number of elements.
+    private int tombstones; // The number of DELETED slots.
+    private int capacity; // Current number of slots.
+    
+    private double maxFullness; // determines how full the array can get, counting tombstones, before resizing occurs
+    private double minFullness; // determines how empty the array can get before resizing occurs
+    private double setFullness; // determines how full the array should be made when resizing
+    
+    /**
+     * Constructs an empty {@code SwissHashtable} with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param set the fullness when the array is resized.
+     * @throws IllegalArgumentException if {@code minimum} is less than or equal to zero or {@code set} is less or equal
+     *             to than {@code minimum} or {@code maximum} is less than or equal to {@code set} or {@code maximum} is
+     *             greater than one.
+     */
+    public SwissHashtable(double maximum, double minimum, double set) throws IllegalArgumentException {
+        if (0 >= minimum)
+            throw new IllegalArgumentException("Illegal minimum fullness: " + minimum);
+        if (minimum >= set)
+            throw new IllegalArgumentException("Minimum fullness is greater than or equal to set.");
+        if (set >= maximum)
+            throw new IllegalArgumentException("Set fullness is greater than or equal to maximum.");
+        if (maximum >= 1)
+            throw new IllegalArgumentException("Illegal maximum fullness: " + maximum);
+        
+        maxFullness = maximum;
+        minFullness = minimum;
+        setFullness = set;
+        
+        allocate(MIN_CAPACITY);
+    }
+    
+    public SwissHashtable(double maximum, double minimum) throws IllegalArgumentException {
+        this(maximum, minimum, DEF_SET);
+    }
+    
+    public SwissHashtable() {
+        this(DEF_MAX, DEF_MIN);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    private int hash(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        return Hashing.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns a word with the high bit set in every byte of {@code group} that equals {@code b}. A byte just above a
+     * real match can show up as a false match, which is harmless since matches get their keys compared anyway.
+     */
+    private static long match(long group, int b) {
+        long x = group ^ (LSBS * b);
+        return (x - LSBS) & ~x & MSBS;
+    }
+    
+    /**
+     * Returns a word with the high bit set in every byte of {@code group} that is {@code EMPTY}. Of the control bytes,
+     * only {@code EMPTY} has its high bit set and its second-lowest bit clear.
+     */
+    private static long matchEmpty(long group) {
+        return group & (~group << 6) & MSBS;
+    }
+    
+    /**
+     * Returns a word with the high bit set in every byte of {@code group} that is {@code EMPTY} or {@code DELETED}.
+     */
+    private static long matchFree(long group) {
+        return group & MSBS;
+    }
+    
+    /**
+     * Returns the slot in group {@code g} picked out by the lowest set bit of {@code matches}.
+     */
+    private static int slot(int g, long matches) {
+        return g * GROUP + (Long.numberOfTrailingZeros(matches) >>> 3);
+    }
+    
+    private void setCtrl(int i, int b) {
+        int shift = (i & (GROUP - 1)) << 3;
+        ctrl[i >>> 3] = (ctrl[i >>> 3] & ~(0xffL << shift)) | ((long) b << shift);
+    }
+    
+    /**
+     * Returns the slot holding {@code key}, or -1 if it isn't in the table.
+     * 
+     * @param key the key to look for
+     * @param h {@code hash(key)}
+     * @return the index of the slot, or -1
+     */
+    private int getIndex(K key, int h) {
+        int groupMask = ctrl.length - 1;
+        int fragment = h & 0x7f;
+        int g = (h >>> 7) & groupMask;
+        for (int step = 1;; step++) {
+            long group = ctrl[g];
+            for (long m = match(group, fragment); m != 0; m &= m - 1) {
+                int i = slot(g, m);
+                if (key.equals(keys[i]))
+                    return i;
+            }
+            if (matchEmpty(group) != 0)
+                return -1;
+            g = (g + step) & groupMask;
+        }
+    }
+    
+    public V get(K key) throws NullPointerException {
+        int i = getIndex(key, hash(key));
+        return i < 0 ? null : vals[i];
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return getIndex(key, hash(key)) >= 0;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] != null && value.equals(vals[i]))
+                return true;
+        }
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> set = new HashSet<K>(size);
+        for (K k : keys)
+            if (k != null)
+                set.add(k);
+        return set;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new SlotIterator<K, V>(keys, vals);
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        int h = hash(key);
+        int i = getIndex(key, h);
+        
+        if (i >= 0) {
+            V previousValue = vals[i];
+            vals[i] = val;
+            return previousValue;
+        }
+        
+        insert(key, val, h);
+        size++;
+        resizeIfNeeded();
+        return null;
+    }
+    
+    /**
+     * Puts a key that is known not to be in the table in the first free slot of its probe sequence.
+     * 
+     * @param key the key
+     * @param val the value
+     * @param h {@code hash(key)}
+     */
+    private void insert(K key, V val, int h) {
+        int groupMask = ctrl.length - 1;
+        int g = (h >>> 7) & groupMask;
+        long free;
+        for (int step = 1; (free = matchFree(ctrl[g])) == 0; step++)
+            g = (g + step) & groupMask;
+        
+        int i = slot(g, free);
+        if (((ctrl[g] >>> ((i & (GROUP - 1)) << 3)) & 0xff) == DELETED)
+            tombstones--;
+        setCtrl(i, h & 0x7f);
+        keys[i] = key;
+        vals[i] = val;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        int i = getIndex(key, hash(key));
+        if (i < 0)
+            return null;
+        
+        V value = vals[i];
+        if (matchEmpty(ctrl[i >>> 3]) != 0) {
+            setCtrl(i, EMPTY);
+        } else {
+            setCtrl(i, DELETED);
+            tombstones++;
+        }
+        keys[i] = null;
+        vals[i] = null;
+        size--;
+        
+        resizeIfNeeded();
+        return value;
+    }
+    
+    public void clear() {
+        Arrays.fill(ctrl, EMPTY_GROUP);
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        size = 0;
+        tombstones = 0;
+        resizeIfNeeded();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int newCapacity) {
+        ctrl = new long[newCapacity / GROUP];
+        Arrays.fill(ctrl, EMPTY_GROUP);
+        keys = (K[]) new Comparable[newCapacity];
+        vals = (V[]) new Object[newCapacity];
+        tombstones = 0;
+        capacity = newCapacity;
+    }
+    
+    /**
+     * Rebuilds the table if the size is out of bounds, or if tombstones have pushed the fullness over the maximum. In
+     * the latter case the capacity may stay the same; the rebuild just clears the tombstones out.
+     */
+    private void resizeIfNeeded() {
+        if (!((size < capacity * minFullness && capacity > MIN_CAPACITY)
+                || size + tombstones > capacity * maxFullness)) {
+            return;
+        }
+        
+        K[] oldKeys = keys;
+        V[] oldVals = vals;
+        
+        allocate(Hashing.capacityFor(size, setFullness, maxFullness, MIN_CAPACITY));
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null)
+                insert(oldKeys[j], oldVals[j], hash(oldKeys[j]));
+        }
+    }
+    
+    /**
+     * Returns the current ratio of entries to slots.
+     * 
+     * @return the current fullness
+     */
+    double fullness() {
+        return (double) size / capacity;
+    }
+    
+    public String toString() {
+        if (setFullness == DEF_SET && maxFullness == DEF_MAX && minFullness == DEF_MIN)
+            return String.format("Swiss Hashtable");
+        else if (setFullness == DEF_SET)
+            return String.format("Swiss Hashtable (%.2f, %.2f)", maxFullness, minFullness);
+        else
+            return String.format("Swiss Hashtable (%.2f, %.2f, %.2f)", maxFullness, minFullness, setFullness);
+    }
+}
+
+class SwissHashtableSupplier implements DictionarySupplier {
+    private double max;
+    private double min;
+    private double set;
+    
+    /**
+     * Constructs empty {@code SwissHashtable}'s with the specified {@code maximum}, {@code minimum}, and {@code set}
+     * fullness ratios
+     * 
+     * @param maximum the maximum fullness
+     * @param minimum the minimum fullness
+     * @param setFullness the fullness when the arrays are resized
+     * 
+     * @see SwissHashtable
+     */
+    public SwissHashtableSupplier(double maximum, double minimum, double setFullness) {
+        max = maximum;
+        min = minimum;
+        set = setFullness;
+    }
+    
+    public SwissHashtableSupplier(double maximum, double minimum) {
+        this(maximum, minimum, SwissHashtable.DEF_SET);
+    }
+    
+    public SwissHashtableSupplier() {
+        this(SwissHashtable.DEF_MAX, SwissHashtable.DEF_MIN);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new SwissHashtable<K, V>(max, min, set);
+    }
+    
+    public String toString() {
+        if (max == SwissHashtable.DEF_MAX && min == SwissHashtable.DEF_MIN && set == SwissHashtable.DEF_SET)
+            return "Swiss";
+        else if (set == 0.5)
+            return String.format("Swiss(%d/%d)", (int) (max * 100), (int) (min * 100));
+        else
+            return String.format("Swiss(%d/%d/%d)", (int) (max * 100), (int) (min * 100), (int) (set * 100));
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * UnrolledList.java
+ * 
+ * Copyright (c) 2013 Jackson Scholl.
+ */
+
+import java.util.*;
+
+/**
+ * An unrolled linked list: a list of chunks, each of which holds up to {@code chunkSize} entries in one array, keys and
+ * values side by side. Meant to be used as a {@link ChainingHashtable} bucket.
+ * <p>
+ * Compared to a {@link LinkedList}, a lookup scans an array instead of chasing a pointer per entry, and a put only
+ * allocates when every chunk is full, instead of every time a key is added; with the default chunk size, a hashtable's
+ * buckets hardly ever need more than the one chunk. A delete fills the hole it leaves with the last entry of the same
+ * chunk, and an emptied chunk is unlinked. A put fills the first chunk with room, so chunks don't stay half empty.
+ * <p>
+ * Keys are kept in no particular order.
+ * 
+ * @author Jackson Scholl
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class UnrolledList<K extends Comparable<K>, V> implements Dictionary<K, V> {
+    final static int DEF_CHUNK_SIZE = 8;
+    
+    private final int chunkSize; // The most entries a chunk may hold
+    private Chunk head;
+    private int size;
+    
+    /**
+     * Makes a new list with chunks of the given size.
+     * 
+     * @param chunkSize the most entries a chunk may hold
+     * @throws IllegalArgumentException if {@code chunkSize} isn't positive
+     */
+    public UnrolledList(int chunkSize) throws IllegalArgumentException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        this.chunkSize = chunkSize;
+        head = null;
+        size = 0;
+    }
+    
+    public UnrolledList() {
+        this(DEF_CHUNK_SIZE);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public V get(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        for (Chunk c = head; c != null; c = c.next) {
+            int i = c.indexOf(key);
+            if (i >= 0)
+                return c.val(i);
+        }
+        return null;
+    }
+    
+    public boolean containsKey(K key) throws NullPointerException {
+        return get(key) != null;
+    }
+    
+    public boolean containsValue(V value) throws NullPointerException {
+        if (value == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        for (Chunk c = head; c != null; c = c.next)
+            for (int i = 0; i < c.n; i++)
+                if (value.equals(c.val(i)))
+                    return true;
+        return false;
+    }
+    
+    public Set<K> getAllKeys() {
+        Set<K> keys = new HashSet<K>();
+        for (Chunk c = head; c != null; c = c.next)
+            for (int i = 0; i < c.n; i++)
+                keys.add(c.key(i));
+        return keys;
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            private Chunk c = head;
+            private int i = 0;
+            
+            public boolean hasNext() {
+                return c != null;
+            }
+            
+            public Map.Entry<K, V> next() {
+                if (c == null)
+                    throw new NoSuchElementException();
+                Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(c.key(i), c.val(i));
+                if (++i == c.n) {
+                    c = c.next;
+                    i = 0;
+                }
+                return entry;
+            }
+            
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    public V put(K key, V val) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        if (val == null)
+            throw new NullPointerException("Value is not allowed to be null");
+        
+        Chunk room = null; // The first chunk with room for another entry
+        Chunk last = null;
+        for (Chunk c = head; c != null; c = c.next) {
+            int i = c.indexOf(key);
+            if (i >= 0) {
+                V previousValue = c.val(i);
+                c.entries[2 * i + 1] = val;
+                return previousValue;
+            }
+            if (room == null && c.n < chunkSize)
+                room = c;
+            last = c;
+        }
+        
+        if (room == null) {
+            room = new Chunk();
+            if (last == null)
+                head = room;
+            else
+                last.next = room;
+        }
+        room.entries[2 * room.n] = key;
+        room.entries[2 * room.n + 1] = val;
+        room.n++;
+        size++;
+        return null;
+    }
+    
+    public V delete(K key) throws NullPointerException {
+        if (key == null)
+            throw new NullPointerException("Key is not allowed to be null");
+        
+        Chunk prev = null;
+        for (Chunk c = head; c != null; prev = c, c = c.next) {
+            int i = c.indexOf(key);
+            if (i < 0)
+                continue;
+            
+            V value = c.val(i);
+            c.n--;
+            c.entries[2 * i] = c.entries[2 * c.n];
+            c.entries[2 * i + 1] = c.entries[2 * c.n + 1];
+            c.entries[2 * c.n] = null;
+            c.entries[2 * c.n + 1] = null;
+            if (c.n == 0) {
+                if (prev == null)
+                    head = c.next;
+                else
+                    prev.next = c.next;
+            }
+            size--;
+            return value;
+        }
+        return null;
+    }
+    
+    public void clear() {
+        head = null;
+        size = 0;
+    }
+    
+    public String toString() {
+        return chunkSize == DEF_CHUNK_SIZE ? "Unrolled List" : String.format("Unrolled List (%d)", chunkSize);
+    }
+    
+    /**
+     * Up to {@code chunkSize} entries, packed at the front of one array: key {@code i} at {@code 2i}, and its value
+     * right after it.
+     */
+    private class Chunk {
+        private final Object[] entries;
+        private int n; // The number of entries
+        private Chunk next;
+        
+        public Chunk() {
+            entries = new Object[2 * chunkSize];
+        }
+        
+        /**
+         * Returns the index of {@code key}'s entry, or {@code -1} if it isn't in this chunk.
+         */
+        int indexOf(K key) {
+            for (int i = 0; i < n; i++)
+                if (key.equals(entries[2 * i]))
+                    return i;
+            return -1;
+        }
+        
+        @SuppressWarnings("unchecked")
+        K key(int i) {
+            return (K) entries[2 * i];
+        }
+        
+        @SuppressWarnings("unchecked")
+        V val(int i) {
+            return (V) entries[2 * i + 1];
+        }
+    }
+}
+
+class UnrolledListSupplier implements DictionarySupplier {
+    private final int chunkSize;
+    
+    public UnrolledListSupplier(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public UnrolledListSupplier() {
+        this(UnrolledList.DEF_CHUNK_SIZE);
+    }
+    
+    public <K extends Comparable<K>, V> Dictionary<K, V> getNew() {
+        return new UnrolledList<K, V>(chunkSize);
+    }
+    
+    public String toString() {
+        return chunkSize == UnrolledList.DEF_CHUNK_SIZE ? "UL" : String.format("UL(%d)", chunkSize);
+    }
+}